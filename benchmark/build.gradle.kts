@@ -1,15 +1,23 @@
 plugins {
     kotlin("jvm")
+    kotlin("kapt")
+    id("me.champeau.jmh") version "0.6.8"
 }
 
 dependencies {
-    implementation(project(":parsnip"))
+    jmh(project(":parsnip"))
 
-    implementation("com.google.caliper:caliper:1.0-beta-3")
-    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-xml:2.13.3")
-    implementation("org.simpleframework:simple-xml:2.7.1")
+    jmh("com.fasterxml.jackson.dataformat:jackson-dataformat-xml:2.13.3")
+    jmh("org.simpleframework:simple-xml:2.7.1")
 
-    implementation("com.tickaroo.tikxml:annotation:0.8.13")
-    implementation("com.tickaroo.tikxml:core:0.8.13")
-    annotationProcessor("com.tickaroo.tikxml:processor:0.8.13")
-}
\ No newline at end of file
+    jmh("com.tickaroo.tikxml:annotation:0.8.13")
+    jmh("com.tickaroo.tikxml:core:0.8.13")
+    kaptJmh("com.tickaroo.tikxml:processor:0.8.13")
+}
+
+jmh {
+    jmhVersion.set("1.35")
+    // Allocation rate matters as much as throughput for a streaming parser.
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,40 @@
+package com.jonathansteele.parsnip
+
+import com.jonathansteele.parsnip.parsnip.Company
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares resolving an adapter on a fresh [Parsnip] (cold, full reflection) against resolving it
+ * again on one that has already built it (warm, served from the adapter cache).
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class AdapterLookupBenchmark {
+    private lateinit var parsnip: Parsnip
+
+    @Setup
+    fun setUp() {
+        parsnip = Parsnip.Builder().build()
+        parsnip.adapter(Company::class.java)
+    }
+
+    @Benchmark
+    fun coldLookup(): XmlAdapter<Company> = Parsnip.Builder().build().adapter(Company::class.java)
+
+    @Benchmark
+    fun warmLookup(): XmlAdapter<Company> = parsnip.adapter(Company::class.java)
+}
@@ -0,0 +1,75 @@
+package com.jonathansteele.parsnip
+
+import okio.Buffer
+import okio.ByteString
+import okio.ByteString.Companion.encodeUtf8
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/**
+ * Reads documents that nest [depth] elements, with or without a namespace prefix, where the work
+ * per element is mostly the reader's stack and path bookkeeping.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class DeepDocumentBenchmark {
+    @Param("100", "1000")
+    var depth: Int = 0
+
+    @Param("", "ns:")
+    lateinit var prefix: String
+
+    private lateinit var xml: ByteString
+
+    private val names = XmlReader.Options.of("item", "id")
+
+    @Setup
+    fun setUp() {
+        xml = buildString {
+            append("<root xmlns:ns=\"urn:deep\">")
+            repeat(depth) { append('<').append(prefix).append("item id=\"1\">") }
+            repeat(depth) { append("</").append(prefix).append("item>") }
+            append("</root>")
+        }.encodeUtf8()
+    }
+
+    /** Reads every element and attribute of the document and returns how deep it went. */
+    @Benchmark
+    fun readNested(): Int {
+        val reader = XmlReader.of(Buffer().write(xml))
+        var maxDepth = 0
+        var depth = 0
+        while (true) {
+            when (reader.peek()) {
+                XmlReader.Token.BEGIN_TAG -> {
+                    reader.beginTag()
+                    reader.selectTag(names)
+                    if (++depth > maxDepth) maxDepth = depth
+                }
+                XmlReader.Token.ATTRIBUTE -> {
+                    reader.selectAttribute(names)
+                    reader.skipValue()
+                }
+                XmlReader.Token.END_TAG -> {
+                    reader.endTag()
+                    if (--depth == 0) return maxDepth
+                }
+                else -> throw AssertionError("Unexpected ${reader.peek()}")
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.jonathansteele.parsnip
+
+import okio.Buffer
+import okio.BufferedSink
+import okio.ByteString
+
+/**
+ * The documents the benchmarks parse: a company with [employees] employees, each with a few attributes
+ * and tags. Every library's model binds the same document.
+ */
+enum class Document(private val employees: Int) {
+    /** About 200 bytes. */
+    SMALL(1),
+
+    /** About 100 KB. */
+    MEDIUM(700),
+
+    /** About 100 MB. Too big to hold in memory next to the parsed result, so it is written to a file. */
+    LARGE(700_000);
+
+    fun writeTo(sink: BufferedSink) {
+        sink.writeUtf8("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+        sink.writeUtf8("<company name=\"Acme\">\n")
+        for (i in 0 until employees) {
+            sink.writeUtf8("  <employee id=\"").writeDecimalLong(i.toLong())
+                .writeUtf8("\" active=\"").writeUtf8(if (i % 3 == 0) "false" else "true")
+                .writeUtf8("\" salary=\"").writeDecimalLong(40_000L + i % 50_000).writeUtf8(".5\">\n")
+            sink.writeUtf8("    <name>Employee ").writeDecimalLong(i.toLong()).writeUtf8("</name>\n")
+            sink.writeUtf8("    <email>employee").writeDecimalLong(i.toLong()).writeUtf8("@example.com</email>\n")
+            sink.writeUtf8("  </employee>\n")
+        }
+        sink.writeUtf8("</company>\n")
+    }
+
+    fun toByteString(): ByteString = Buffer().also { writeTo(it) }.readByteString()
+}
@@ -0,0 +1,56 @@
+package com.jonathansteele.parsnip
+
+import okio.Buffer
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/**
+ * Writes elements whose attribute values and text either need no escaping at all or are dense with
+ * markup characters, through [XmlWriter]'s escaping.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class EscapeBenchmark {
+    @Param("plain", "markup")
+    lateinit var content: String
+
+    private lateinit var value: String
+    private lateinit var text: String
+
+    @Setup
+    fun setUp() {
+        if (content == "plain") {
+            value = "An attribute value with nothing to escape"
+            text = "Some text content that is long enough to be copied in runs ".repeat(4)
+        } else {
+            value = "Tom & Jerry say \"<hi>\"\n"
+            text = "if (a < b && b > c) { return \"<none>\" } ".repeat(4)
+        }
+    }
+
+    @Benchmark
+    fun write(): Long {
+        val buffer = Buffer()
+        val writer = XmlWriter(buffer)
+        writer.beginTag("items")
+        repeat(100) {
+            writer.beginTag("item").name("description").value(value).text(text).endTag()
+        }
+        writer.endTag()
+        return buffer.size
+    }
+}
@@ -0,0 +1,60 @@
+package com.jonathansteele.parsnip
+
+import com.jonathansteele.parsnip.parsnip.Employee
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the method handle [FieldAccessor] that [ClassXmlAdapter] uses by default with the
+ * reflective one it falls back to, for an object field and a primitive field.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class FieldAccessBenchmark {
+    @Param("methodHandle", "reflection")
+    lateinit var accessor: String
+
+    private lateinit var nameAccessor: FieldAccessor
+    private lateinit var idAccessor: FieldAccessor
+    private val employee = Employee()
+    private var counter = 0
+
+    @Setup
+    fun setUp() {
+        val name = Employee::class.java.getDeclaredField("name").apply { isAccessible = true }
+        val id = Employee::class.java.getDeclaredField("id").apply { isAccessible = true }
+        if (accessor == "methodHandle") {
+            nameAccessor = FieldAccessor.of(name)
+            idAccessor = FieldAccessor.of(id)
+        } else {
+            nameAccessor = FieldAccessor.reflective(name)
+            idAccessor = FieldAccessor.reflective(id)
+        }
+    }
+
+    @Benchmark
+    fun objectField(): Any? {
+        nameAccessor.set(employee, "Paul")
+        return nameAccessor.get(employee)
+    }
+
+    @Benchmark
+    fun intField(): Int {
+        idAccessor.setInt(employee, counter++)
+        return idAccessor.getInt(employee)
+    }
+}
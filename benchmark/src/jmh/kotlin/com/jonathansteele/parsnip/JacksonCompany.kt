@@ -0,0 +1,30 @@
+package com.jonathansteele.parsnip
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement
+
+@JacksonXmlRootElement(localName = "company")
+class JacksonCompany {
+    @JacksonXmlProperty(isAttribute = true)
+    var name: String? = null
+
+    @JacksonXmlElementWrapper(useWrapping = false)
+    @JacksonXmlProperty(localName = "employee")
+    var employees: List<JacksonEmployee> = ArrayList()
+}
+
+class JacksonEmployee {
+    @JacksonXmlProperty(isAttribute = true)
+    var id: Int = 0
+
+    @JacksonXmlProperty(isAttribute = true)
+    var active: Boolean = false
+
+    @JacksonXmlProperty(isAttribute = true)
+    var salary: Double = 0.0
+
+    var name: String? = null
+
+    var email: String? = null
+}
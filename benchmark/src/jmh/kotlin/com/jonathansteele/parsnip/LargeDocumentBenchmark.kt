@@ -0,0 +1,87 @@
+package com.jonathansteele.parsnip
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper
+import com.jonathansteele.parsnip.parsnip.Company
+import com.jonathansteele.parsnip.parsnip.Employee
+import com.jonathansteele.parsnip.tikxml.TikXmlCompany
+import com.tickaroo.tikxml.TikXml
+import okio.buffer
+import okio.sink
+import okio.source
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import org.simpleframework.xml.core.Persister
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * Streams the [Document.LARGE] document from a file. A single parse takes long enough that each one is
+ * timed on its own rather than in a throughput loop.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = ["-Xmx2g"])
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class LargeDocumentBenchmark {
+    private lateinit var file: File
+    private lateinit var parsnip: Parsnip
+    private lateinit var parsnipAdapter: XmlAdapter<Company>
+    private lateinit var employeeAdapter: XmlAdapter<Employee>
+    private lateinit var xmlMapper: XmlMapper
+    private lateinit var persister: Persister
+    private lateinit var tikXmlParser: TikXml
+
+    @Setup
+    fun setUp() {
+        file = File.createTempFile("parsnip-benchmark", ".xml")
+        file.sink().buffer().use { Document.LARGE.writeTo(it) }
+        parsnip = Parsnip.Builder().build()
+        parsnipAdapter = parsnip.adapter(Company::class.java)
+        employeeAdapter = parsnip.adapter(Employee::class.java)
+        xmlMapper = XmlMapper()
+        persister = Persister()
+        tikXmlParser = TikXml.Builder().exceptionOnUnreadXml(false).build()
+    }
+
+    @TearDown
+    fun tearDown() {
+        file.delete()
+    }
+
+    @Benchmark
+    fun parsnip(): Company = file.source().buffer().use { parsnipAdapter.fromXml(it) }
+
+    /** Reads the same file memory-mapped instead of through a stream. */
+    @Benchmark
+    fun parsnipMapped(): Company = parsnipAdapter.fromXml(file.toPath())
+
+    /** Reads the employees one at a time instead of binding the whole company. */
+    @Benchmark
+    fun parsnipStream(): Int = file.source().buffer().use { source ->
+        XmlAdapter.streamChildren(source, "/company/employee", employeeAdapter).count()
+    }
+
+    /** Binds the employees in parallel, in chunks split at employee boundaries. */
+    @Benchmark
+    fun parsnipParallel(): Long = parsnip.parallelStream(file.toPath(), "employee", employeeAdapter).use { it.count() }
+
+    @Benchmark
+    fun jackson(): JacksonCompany = xmlMapper.readValue(file, JacksonCompany::class.java)
+
+    @Benchmark
+    fun simpleFramework(): SimpleFrameworkCompany = persister.read(SimpleFrameworkCompany::class.java, file)
+
+    @Benchmark
+    fun tikXml(): TikXmlCompany = file.source().buffer().use { tikXmlParser.read(it, TikXmlCompany::class.java) }
+}
@@ -0,0 +1,64 @@
+package com.jonathansteele.parsnip
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper
+import com.jonathansteele.parsnip.parsnip.Company
+import com.jonathansteele.parsnip.tikxml.TikXmlCompany
+import com.tickaroo.tikxml.TikXml
+import okio.Buffer
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.simpleframework.xml.core.Persister
+import java.io.ByteArrayInputStream
+import java.util.concurrent.TimeUnit
+
+/**
+ * Binds an in-memory [Document] with Parsnip and, as baselines, Jackson, Simple XML and TikXml. Each
+ * library is configured once, so this measures steady-state parsing only.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class ReadBenchmark {
+    @Param("SMALL", "MEDIUM")
+    lateinit var document: Document
+
+    private lateinit var xml: ByteArray
+    private lateinit var parsnipAdapter: XmlAdapter<Company>
+    private lateinit var xmlMapper: XmlMapper
+    private lateinit var persister: Persister
+    private lateinit var tikXmlParser: TikXml
+
+    @Setup
+    fun setUp() {
+        xml = document.toByteString().toByteArray()
+        parsnipAdapter = Parsnip.Builder().build().adapter(Company::class.java)
+        xmlMapper = XmlMapper()
+        persister = Persister()
+        tikXmlParser = TikXml.Builder().exceptionOnUnreadXml(false).build()
+    }
+
+    @Benchmark
+    fun parsnip(): Company = parsnipAdapter.fromXml(Buffer().write(xml))
+
+    @Benchmark
+    fun jackson(): JacksonCompany = xmlMapper.readValue(xml, JacksonCompany::class.java)
+
+    @Benchmark
+    fun simpleFramework(): SimpleFrameworkCompany =
+        persister.read(SimpleFrameworkCompany::class.java, ByteArrayInputStream(xml))
+
+    @Benchmark
+    fun tikXml(): TikXmlCompany = tikXmlParser.read(Buffer().write(xml), TikXmlCompany::class.java)
+}
@@ -0,0 +1,33 @@
+package com.jonathansteele.parsnip
+
+import org.simpleframework.xml.Attribute
+import org.simpleframework.xml.Element
+import org.simpleframework.xml.ElementList
+import org.simpleframework.xml.Root
+
+@Root(name = "company", strict = false)
+class SimpleFrameworkCompany {
+    @field:Attribute
+    var name: String? = null
+
+    @field:ElementList(inline = true, entry = "employee")
+    var employees: MutableList<SimpleFrameworkEmployee>? = null
+}
+
+@Root(name = "employee", strict = false)
+class SimpleFrameworkEmployee {
+    @field:Attribute
+    var id: Int = 0
+
+    @field:Attribute
+    var active: Boolean = false
+
+    @field:Attribute
+    var salary: Double = 0.0
+
+    @field:Element
+    var name: String? = null
+
+    @field:Element
+    var email: String? = null
+}
@@ -0,0 +1,54 @@
+package com.jonathansteele.parsnip
+
+import com.jonathansteele.parsnip.parsnip.Employee
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/**
+ * Parses an employee whose bound tags are surrounded by [ignored] subtrees that the adapter
+ * doesn't know about, so nearly all of the document goes through [XmlReader.skip].
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class SkipBenchmark {
+    @Param("10", "100", "1000")
+    var ignored: Int = 0
+
+    private lateinit var xml: String
+    private lateinit var adapter: XmlAdapter<Employee>
+
+    @Setup
+    fun setUp() {
+        xml = buildString {
+            append("<employee id=\"1\">")
+            repeat(ignored) { i ->
+                append("<department id=\"").append(i).append("\" manager='someone &amp; else'>")
+                append("<description>Some text that nobody reads</description>")
+                append("<!-- a comment with <tags> inside -->")
+                append("<notes><![CDATA[<b>not</b> markup]]></notes>")
+                append("<address street=\"Main\" number=\"1\"/>")
+                append("</department>")
+            }
+            append("<name>Paul</name>")
+            append("</employee>")
+        }
+        adapter = Parsnip.Builder().build().adapter(Employee::class.java)
+    }
+
+    @Benchmark
+    fun skipMostContent(): Employee = adapter.fromXml(xml)
+}
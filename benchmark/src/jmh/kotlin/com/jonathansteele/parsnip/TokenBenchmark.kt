@@ -0,0 +1,88 @@
+package com.jonathansteele.parsnip
+
+import okio.Buffer
+import okio.ByteString
+import okio.ByteString.Companion.encodeUtf8
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/**
+ * Walks documents made almost entirely of one kind of token through the [XmlReader] API, so that a
+ * regression in any one part of the tokenizer shows up on its own.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class TokenBenchmark {
+    @Param("tags", "attributes", "text", "entities", "cdata", "namespaces")
+    lateinit var token: String
+
+    private lateinit var xml: ByteString
+
+    @Setup
+    fun setUp() {
+        xml = buildString {
+            append("<root>")
+            repeat(1000) { i ->
+                when (token) {
+                    "tags" -> append("<item><id/><name/></item>")
+                    "attributes" -> append("<item id=\"").append(i).append("\" name='item' kind=\"plain\"/>")
+                    "text" -> append("<item>Some ordinary text content without any markup</item>")
+                    "entities" -> append("<item>Tom &amp; Jerry &lt;3 &quot;cheese&quot; &#169; &#x2122;</item>")
+                    "cdata" -> append("<item><![CDATA[Some <b>markup</b> that is kept as is]]></item>")
+                    "namespaces" -> append("<ns:item xmlns:ns=\"urn:item\" ns:id=\"").append(i).append("\"/>")
+                }
+            }
+            append("</root>")
+        }.encodeUtf8()
+    }
+
+    @Benchmark
+    fun readTokens(): Int {
+        val reader = XmlReader.of(Buffer().write(xml))
+        reader.beginTag()
+        reader.nextTagName()
+        return 2 + readContent(reader)
+    }
+
+    /** Reads every token up to the end of the current element and returns how many there were. */
+    private fun readContent(reader: XmlReader): Int {
+        var count = 0
+        while (true) {
+            when (reader.peek()) {
+                XmlReader.Token.ATTRIBUTE -> {
+                    reader.nextAttribute()
+                    reader.nextValue()
+                    count += 2
+                }
+                XmlReader.Token.TEXT -> {
+                    reader.nextText()
+                    count++
+                }
+                XmlReader.Token.BEGIN_TAG -> {
+                    reader.beginTag()
+                    reader.nextTagName()
+                    count += 2 + readContent(reader)
+                }
+                XmlReader.Token.END_TAG -> {
+                    reader.endTag()
+                    return count + 1
+                }
+                else -> throw AssertionError("Unexpected ${reader.peek()}")
+            }
+        }
+    }
+}
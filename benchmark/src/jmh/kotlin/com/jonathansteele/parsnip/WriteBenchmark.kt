@@ -0,0 +1,70 @@
+package com.jonathansteele.parsnip
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper
+import com.jonathansteele.parsnip.parsnip.Company
+import com.jonathansteele.parsnip.tikxml.TikXmlCompany
+import com.tickaroo.tikxml.TikXml
+import okio.Buffer
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.simpleframework.xml.core.Persister
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.TimeUnit
+
+/**
+ * Serializes a [Document] that each library parsed during setup, into an in-memory sink.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class WriteBenchmark {
+    @Param("SMALL", "MEDIUM")
+    lateinit var document: Document
+
+    private lateinit var parsnipAdapter: XmlAdapter<Company>
+    private lateinit var parsnipCompany: Company
+    private lateinit var xmlMapper: XmlMapper
+    private lateinit var jacksonCompany: JacksonCompany
+    private lateinit var persister: Persister
+    private lateinit var simpleFrameworkCompany: SimpleFrameworkCompany
+    private lateinit var tikXmlParser: TikXml
+    private lateinit var tikXmlCompany: TikXmlCompany
+
+    @Setup
+    fun setUp() {
+        val xml = document.toByteString()
+        parsnipAdapter = Parsnip.Builder().build().adapter(Company::class.java)
+        parsnipCompany = parsnipAdapter.fromXml(Buffer().write(xml))
+        xmlMapper = XmlMapper()
+        jacksonCompany = xmlMapper.readValue(xml.toByteArray(), JacksonCompany::class.java)
+        persister = Persister()
+        simpleFrameworkCompany = persister.read(SimpleFrameworkCompany::class.java, ByteArrayInputStream(xml.toByteArray()))
+        tikXmlParser = TikXml.Builder().exceptionOnUnreadXml(false).build()
+        tikXmlCompany = tikXmlParser.read(Buffer().write(xml), TikXmlCompany::class.java)
+    }
+
+    @Benchmark
+    fun parsnip(): Long = Buffer().also { parsnipAdapter.toXml(it, parsnipCompany) }.size
+
+    @Benchmark
+    fun jackson(): ByteArray = xmlMapper.writeValueAsBytes(jacksonCompany)
+
+    @Benchmark
+    fun simpleFramework(): Int = ByteArrayOutputStream().also { persister.write(simpleFrameworkCompany, it) }.size()
+
+    @Benchmark
+    fun tikXml(): Long = Buffer().also { tikXmlParser.write(it, tikXmlCompany) }.size
+}
@@ -0,0 +1,21 @@
+package com.jonathansteele.parsnip.parsnip
+
+import com.jonathansteele.parsnip.annotations.SerializedName
+import com.jonathansteele.parsnip.annotations.Tag
+
+@SerializedName("company")
+data class Company(
+    var name: String? = null,
+    var employees: List<Employee> = emptyList()
+)
+
+@SerializedName("employee")
+data class Employee(
+    var id: Int = 0,
+    var active: Boolean = false,
+    var salary: Double = 0.0,
+    @Tag
+    var name: String? = null,
+    @Tag
+    var email: String? = null
+)
@@ -0,0 +1,40 @@
+package com.jonathansteele.parsnip.tikxml
+
+import com.tickaroo.tikxml.annotation.Attribute
+import com.tickaroo.tikxml.annotation.Element
+import com.tickaroo.tikxml.annotation.PropertyElement
+import com.tickaroo.tikxml.annotation.Xml
+
+@Xml(name = "company")
+class TikXmlCompany {
+    @JvmField
+    @Attribute
+    var name: String? = null
+
+    @JvmField
+    @Element(name = "employee")
+    var employees: MutableList<TikXmlEmployee>? = null
+}
+
+@Xml(name = "employee")
+class TikXmlEmployee {
+    @JvmField
+    @Attribute
+    var id: Int = 0
+
+    @JvmField
+    @Attribute
+    var active: Boolean = false
+
+    @JvmField
+    @Attribute
+    var salary: Double = 0.0
+
+    @JvmField
+    @PropertyElement
+    var name: String? = null
+
+    @JvmField
+    @PropertyElement
+    var email: String? = null
+}
@@ -0,0 +1,9 @@
+plugins {
+    kotlin("jvm")
+}
+
+dependencies {
+    api(project(":parsnip"))
+    api("org.jetbrains.kotlinx:kotlinx-coroutines-core:1.6.4")
+    testImplementation("junit:junit:4.13.2")
+}
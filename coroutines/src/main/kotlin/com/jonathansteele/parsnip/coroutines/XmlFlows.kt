@@ -0,0 +1,68 @@
+package com.jonathansteele.parsnip.coroutines
+
+import com.jonathansteele.parsnip.XmlAdapter
+import com.jonathansteele.parsnip.XmlElementScanner
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.FlowCollector
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.withContext
+import okio.Buffer
+import okio.ByteString
+import okio.Source
+import java.io.EOFException
+import kotlin.coroutines.CoroutineContext
+
+/**
+ * Returns a flow of the [elementName] children of the root element of the document whose bytes are
+ * the chunks of this flow, read with [adapter] like [XmlAdapter.streamChildren]. Each element is
+ * bound as soon as its last byte has arrived and only the bytes of the element being scanned are
+ * held. No chunk is collected while an element is being emitted, so a slow collector holds back the
+ * upstream instead of letting bytes pile up, and waiting for bytes suspends rather than blocks.
+ * Other children of the root are skipped. Elements are read with the namespaces declared on the
+ * root element.
+ */
+fun <T> Flow<ByteString>.xmlElements(elementName: String, adapter: XmlAdapter<T>): Flow<T> = flow {
+    val scanner = XmlElementScanner(elementName)
+    val buffer = Buffer()
+    collect { chunk ->
+        buffer.write(chunk)
+        emitElements(scanner, buffer, adapter)
+    }
+    checkDone(scanner)
+}
+
+/**
+ * Returns a flow of the [elementName] children of the root element of the document in this source,
+ * like [Flow.xmlElements]. Reads from the source, which block, run in [ioContext] so that the
+ * collecting coroutine only ever suspends while waiting for them. The source is closed once the
+ * flow completes.
+ */
+fun <T> Source.xmlElements(
+    elementName: String,
+    adapter: XmlAdapter<T>,
+    ioContext: CoroutineContext = Dispatchers.IO
+): Flow<T> = flow {
+    use { source ->
+        val scanner = XmlElementScanner(elementName)
+        val buffer = Buffer()
+        while (!scanner.isDone && withContext(ioContext) { source.read(buffer, READ_SIZE) } != -1L) {
+            emitElements(scanner, buffer, adapter)
+        }
+        checkDone(scanner)
+    }
+}
+
+private suspend fun <T> FlowCollector<T>.emitElements(scanner: XmlElementScanner, buffer: Buffer, adapter: XmlAdapter<T>) {
+    while (true) {
+        val reader = scanner.next(buffer) ?: return
+        emit(adapter.fromXml(reader))
+    }
+}
+
+private fun checkDone(scanner: XmlElementScanner) {
+    if (!scanner.isDone) throw EOFException("Unexpected end of file! The root element is not closed!")
+}
+
+// Large enough that the cost of switching to the I/O context is small against the read.
+private const val READ_SIZE = 64L * 1024L
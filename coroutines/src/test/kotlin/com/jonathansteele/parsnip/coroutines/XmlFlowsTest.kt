@@ -0,0 +1,65 @@
+package com.jonathansteele.parsnip.coroutines
+
+import com.jonathansteele.parsnip.Parsnip
+import com.jonathansteele.parsnip.annotations.Namespace
+import com.jonathansteele.parsnip.annotations.Text
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import okio.Buffer
+import okio.ByteString.Companion.encodeUtf8
+import okio.ByteString.Companion.toByteString
+import org.junit.Assert
+import org.junit.Test
+import java.io.EOFException
+
+class XmlFlowsTest {
+    class Item(val id: String, @Text val text: String)
+
+    class Entry(@Namespace("m", "http://search.yahoo.com/mrss/") val thumbnail: String)
+
+    private val adapter = Parsnip.Builder().build().adapter(Item::class.java)
+
+    private val xml = "<?xml version=\"1.0\"?><!DOCTYPE feed [<!ENTITY a \"b\">]><feed>" +
+            "<Item id=\"1\">one</Item><!-- <Item id=\"x\"/> --><other><Item id=\"y\">skipped</Item></other>" +
+            "<Item id='>2'><![CDATA[</Item>]]></Item><Item id=\"3\">three</Item></feed>"
+
+    @Test
+    fun checkElementsFromChunks() = runBlocking {
+        // One byte per chunk, so that every piece of markup is split across chunks.
+        val items = xml.encodeUtf8().toByteArray()
+            .map { byteArrayOf(it).toByteString() }
+            .asFlow()
+            .xmlElements("Item", adapter)
+            .toList()
+
+        Assert.assertEquals(listOf("1", ">2", "3"), items.map { it.id })
+        Assert.assertEquals(listOf("one", "</Item>", "three"), items.map { it.text })
+    }
+
+    @Test
+    fun checkElementsFromSource() = runBlocking {
+        val items = Buffer().writeUtf8(xml).xmlElements("Item", adapter).toList()
+
+        Assert.assertEquals(listOf("1", ">2", "3"), items.map { it.id })
+    }
+
+    @Test
+    fun checkElementsWithRootNamespaces() = runBlocking {
+        val entryAdapter = Parsnip.Builder().build().adapter(Entry::class.java)
+        val xml = "<feed xmlns:media=\"http://search.yahoo.com/mrss/\">" +
+                "<Entry media:thumbnail=\"a.png\"/><Entry media:thumbnail=\"b.png\"></Entry></feed>"
+        val entries = xml.encodeUtf8().toByteArray()
+            .map { byteArrayOf(it).toByteString() }
+            .asFlow()
+            .xmlElements("Entry", entryAdapter)
+            .toList()
+
+        Assert.assertEquals(listOf("a.png", "b.png"), entries.map { it.thumbnail })
+    }
+
+    @Test(expected = EOFException::class)
+    fun checkUnclosedRoot() = runBlocking<Unit> {
+        Buffer().writeUtf8("<feed><Item id=\"1\">one</Item>").xmlElements("Item", adapter).toList()
+    }
+}
@@ -14,4 +14,5 @@ dependencies {
     kapt("com.google.auto.service:auto-service:1.0.1")
 
     testImplementation("junit:junit:4.13.2")
+    testImplementation("com.github.tschuchortdev:kotlin-compile-testing:1.4.9")
 }
\ No newline at end of file
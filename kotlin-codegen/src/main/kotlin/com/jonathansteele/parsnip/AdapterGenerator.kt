@@ -1,21 +1,51 @@
 package com.jonathansteele.parsnip
 
+import com.jonathansteele.parsnip.annotations.SerializedName
+import com.jonathansteele.parsnip.annotations.Text
+import com.jonathansteele.parsnip.annotations.XmlQualifier
 import com.squareup.kotlinpoet.*
 import com.squareup.kotlinpoet.ParameterizedTypeName.Companion.parameterizedBy
+import kotlinx.metadata.Flag
 import kotlinx.metadata.KmClass
+import kotlinx.metadata.KmClassifier
+import kotlinx.metadata.KmProperty
+import kotlinx.metadata.KmType
+import kotlinx.metadata.KmValueParameter
+import kotlinx.metadata.KmVariance
+import javax.annotation.processing.Messager
+import javax.lang.model.element.Modifier
 import javax.lang.model.element.TypeElement
+import javax.lang.model.element.VariableElement
+import javax.lang.model.util.ElementFilter
+import javax.lang.model.util.Elements
+import javax.tools.Diagnostic
+import com.jonathansteele.parsnip.annotations.Namespace as XmlNamespace
 
+/**
+ * Generates a streaming [XmlAdapter] for a Kotlin class. Properties are bound the same way
+ * [ClassXmlAdapter] binds fields, but read and written through direct constructor calls and property
+ * accesses, so no reflection is needed at runtime. As with [ClassXmlAdapter], whether a property is
+ * an attribute or a tag depends on the adapters and converters registered with [Parsnip], so that
+ * choice is made once when the generated adapter is created.
+ */
 class AdapterGenerator(
     private val kmClass: KmClass,
-    private val packageName: String,
-    private val type: TypeElement
+    private val type: TypeElement,
+    private val elements: Elements,
+    private val messager: Messager
 ) {
-    private val adapterName = "${kmClass.name}_XmlAdapter"
+    private val packageName = elements.getPackageOf(type).qualifiedName.toString()
 
-    private val className = ClassName.bestGuess(kmClass.name)
+    // Matches Types.generatedXmlAdapterName, which Parsnip uses to find this adapter at runtime.
+    private val adapterName = Types.generatedXmlAdapterName(elements.getBinaryName(type).toString())
+        .removePrefix("$packageName.")
 
-    private val parsnipParam = ParameterSpec
-        .builder("parsnip", Parsnip::class.asClassName())
+    private val className = kmClass.name.toClassName()
+
+    private val nameAllocator = NameAllocator()
+
+    private val adaptersParam = ParameterSpec
+        .builder(nameAllocator.newName("adapters"), XmlAdapters::class)
         .build()
     private val readerParam = ParameterSpec
         .builder("reader", XmlReader::class)
@@ -24,49 +54,552 @@ class AdapterGenerator(
         .builder("writer", XmlWriter::class)
         .build()
     private val valueParam = ParameterSpec
-        .builder("value", className.copy(nullable = true))
+        .builder("value", className)
         .build()
 
     private val xmlAdapterTypeName = XmlAdapter::class.asClassName().parameterizedBy(
         className
     )
 
-    fun prepare() : FileSpec {
+    private val fields: Map<String, VariableElement> = ElementFilter.fieldsIn(type.enclosedElements)
+        .associateBy { it.simpleName.toString() }
+
+    private lateinit var bindings: List<PropertyBinding>
+    private val namespaces = LinkedHashMap<Pair<String?, String>, PropertySpec>()
+    private lateinit var attributeOptions: PropertySpec
+    private lateinit var tagOptions: PropertySpec
+
+    // Distinct names with the bindings that may match them, namespace-qualified ones first.
+    private lateinit var attributeNames: Map<String, List<PropertyBinding>>
+    private lateinit var tagNames: Map<String, List<PropertyBinding>>
+
+    /** Returns the generated file, or null if the class can't have a generated adapter. */
+    fun prepare(): FileSpec? {
+        if (kmClass.typeParameters.isNotEmpty()) {
+            error("@XmlClass can't generate adapters for generic classes")
+            return null
+        }
+        if (Flag.IS_ABSTRACT(kmClass.flags) || Flag.Class.IS_INNER(kmClass.flags)) {
+            error("@XmlClass can't generate adapters for abstract or inner classes")
+            return null
+        }
+        bindings = createBindings() ?: return null
+
         val result = FileSpec.builder(packageName, adapterName)
-        result.addFileComment("Code generated by parsnip-kotlin-codegen. Do not edit.", arrayOf<Any>())
+        result.addFileComment("Code generated by parsnip-kotlin-codegen. Do not edit.")
         result.addType(generateType())
         return result.build()
     }
 
+    private fun createBindings(): List<PropertyBinding>? {
+        val constructor = kmClass.constructors.firstOrNull { !Flag.Constructor.IS_SECONDARY(it.flags) }
+        if (constructor == null) {
+            error("@XmlClass requires a primary constructor")
+            return null
+        }
+        val parameters = constructor.valueParameters.associateBy { it.name }
+        val properties = kmClass.properties.associateBy { it.name }
+        for (parameter in constructor.valueParameters) {
+            if (parameter.name !in properties && !Flag.ValueParameter.DECLARES_DEFAULT_VALUE(parameter.flags)) {
+                error("Constructor parameter '${parameter.name}' must be a property or have a default value")
+                return null
+            }
+        }
+
+        val result = ArrayList<PropertyBinding>()
+        var failed = false
+        for (property in kmClass.properties) {
+            val field = fields[property.name] ?: continue // No backing field, so nothing to bind.
+            if (field.modifiers.contains(Modifier.STATIC) || field.modifiers.contains(Modifier.TRANSIENT)) continue
+            val parameter = parameters[property.name]
+            if (parameter == null && !Flag.Property.IS_VAR(property.flags)) continue
+            if (Flag.IS_PRIVATE(property.flags)) {
+                error("Property '${property.name}' must not be private", field)
+                failed = true
+                continue
+            }
+            val hasDefault = parameter != null && Flag.ValueParameter.DECLARES_DEFAULT_VALUE(parameter.flags)
+            if (hasDefault && !Flag.Property.IS_VAR(property.flags) && !Flag.Class.IS_DATA(kmClass.flags)) {
+                error("Property '${property.name}' has a default value, so it must be a var or the class a data class", field)
+                failed = true
+                continue
+            }
+            val binding = createBinding(property, parameter, field)
+            if (binding == null) {
+                failed = true
+                continue
+            }
+            result += binding
+        }
+        if (failed) return null
+        if (result.count { it.kind == Kind.TEXT } > 1) {
+            error("@Text may only be used on one property")
+            return null
+        }
+        return result
+    }
+
+    private fun createBinding(property: KmProperty, parameter: KmValueParameter?, field: VariableElement): PropertyBinding? {
+        val kmType = property.returnType
+        val typeName = kmType.toTypeName() ?: return null
+        val rawName = (kmType.classifier as KmClassifier.Class).name
+        val namespace = field.getAnnotation(XmlNamespace::class.java)
+        val qualified = field.annotationMirrors.any {
+            it.annotationType.asElement().getAnnotation(XmlQualifier::class.java) != null
+        }
+        val annotations = if (qualified) {
+            CodeBlock.of("%T::class.java.getDeclaredField(%S).%M", className, field.simpleName.toString(), XML_ANNOTATIONS)
+        } else {
+            CodeBlock.of("%M", NO_ANNOTATIONS)
+        }
+        val serializedName = field.getAnnotation(SerializedName::class.java)?.value
+
+        return if (rawName in COLLECTION_TYPES) {
+            val elementType = kmType.arguments.firstOrNull()?.type
+            if (elementType == null) {
+                error("Collection property '${property.name}' needs a concrete element type", field)
+                return null
+            }
+            val elementTypeName = elementType.toTypeName() ?: return null
+            val elementClassName = (elementType.classifier as KmClassifier.Class).name
+            val xmlName = serializedName
+                ?: elements.getTypeElement(elementClassName.replace('/', '.'))?.getAnnotation(SerializedName::class.java)?.value
+                ?: elementClassName.substringAfterLast('/').substringAfterLast('.')
+            PropertyBinding(
+                property = property,
+                parameter = parameter,
+                xmlName = xmlName,
+                kind = Kind.COLLECTION,
+                typeName = typeName,
+                elementTypeName = elementTypeName,
+                javaType = CodeBlock.of("%T::class.javaObjectType", elementTypeName.rawClassName()),
+                annotations = annotations,
+                namespace = namespace,
+                collectionType = if (rawName in SET_TYPES) LINKED_HASH_SET else ARRAY_LIST
+            )
+        } else {
+            PropertyBinding(
+                property = property,
+                parameter = parameter,
+                xmlName = serializedName ?: property.name,
+                kind = if (field.getAnnotation(Text::class.java) != null) Kind.TEXT else Kind.VALUE,
+                typeName = typeName,
+                elementTypeName = null,
+                javaType = kmType.javaType(boxed = false),
+                annotations = annotations,
+                namespace = namespace,
+                collectionType = null
+            )
+        }
+    }
+
     private fun generateType(): TypeSpec {
         val result = TypeSpec.classBuilder(adapterName)
             .superclass(xmlAdapterTypeName)
             .primaryConstructor(generateConstructor())
             .addOriginatingElement(type)
+
+        for (binding in bindings) {
+            binding.namespace?.let { namespace ->
+                val alias = namespace.alias.ifEmpty { null }
+                namespaces.getOrPut(alias to namespace.value) {
+                    PropertySpec.builder(nameAllocator.newName("namespace"), Namespace::class, KModifier.PRIVATE)
+                        .initializer("%T(%S, %S)", Namespace::class, alias, namespace.value)
+                        .build()
+                }
+            }
+        }
+        namespaces.values.forEach { result.addProperty(it) }
+
+        attributeNames = namesFor(bindings.filter { it.kind == Kind.VALUE })
+        tagNames = namesFor(bindings.filter { it.kind == Kind.VALUE || it.kind == Kind.COLLECTION })
+        attributeOptions = optionsProperty("attributeOptions", attributeNames.keys)
+        tagOptions = optionsProperty("tagOptions", tagNames.keys)
+        result.addProperty(attributeOptions)
+        result.addProperty(tagOptions)
+
+        for (binding in bindings) {
+            binding.adapter?.let { result.addProperty(it) }
+            binding.converter?.let { result.addProperty(it) }
+        }
+
         result.addFunction(generateFromXmlFun())
         result.addFunction(generateToXmlFun())
         return result.build()
     }
 
     private fun generateConstructor(): FunSpec =
-        FunSpec.constructorBuilder().addParameter(parsnipParam).build()
+        FunSpec.constructorBuilder().addParameter(adaptersParam).build()
+
+    private fun namesFor(bindings: List<PropertyBinding>): Map<String, List<PropertyBinding>> =
+        bindings.groupBy { it.xmlName }.mapValues { (_, candidates) -> candidates.sortedBy { it.namespace == null } }
+
+    private fun optionsProperty(name: String, names: Collection<String>): PropertySpec {
+        val optionsClassName = XmlReader.Options::class.asClassName()
+        return PropertySpec.builder(nameAllocator.newName(name), optionsClassName, KModifier.PRIVATE)
+            .initializer("%T.of(%L)", optionsClassName, names.map { CodeBlock.of("%S", it) }.joinToCode())
+            .build()
+    }
 
     private fun generateFromXmlFun(): FunSpec {
         val result = FunSpec.builder("fromXml")
             .addModifiers(KModifier.OVERRIDE)
             .addParameter(readerParam)
             .returns(className)
+
+        val locals = nameAllocator.copy()
+        locals.newName(readerParam.name)
+        val token = locals.newName("token")
+        for (binding in bindings) {
+            binding.local = locals.newName(binding.property.name)
+            if (binding.kind == Kind.COLLECTION) {
+                result.addStatement("val %N = %T()", binding.local, binding.collectionType!!.parameterizedBy(binding.elementTypeName!!))
+            } else {
+                binding.setLocal = locals.newName("${binding.property.name}Set")
+                result.addStatement("var %N: %T = null", binding.local, binding.typeName.copy(nullable = true))
+                result.addStatement("var %N = false", binding.setLocal)
+            }
+        }
+
+        result.addStatement("var %N = %N.peek()", token, readerParam)
+        result.beginControlFlow("while (%N != %T.END_TAG)", token, TOKEN)
+        result.beginControlFlow("when (%N)", token)
+
+        result.beginControlFlow("%T.ATTRIBUTE ->", TOKEN)
+        result.beginControlFlow("when (%N.selectAttribute(%N))", readerParam, attributeOptions)
+        for ((index, candidates) in attributeNames.values.withIndex()) {
+            result.beginControlFlow("%L ->", index)
+            result.beginControlFlow("when")
+            for (binding in candidates) {
+                result.beginControlFlow("%L ->", matchCondition(binding, binding.converter!!))
+                result.addStatement("%N = %N.from(%N.nextValue())", binding.local, binding.converter!!, readerParam)
+                result.addStatement("%N = true", binding.setLocal)
+                result.endControlFlow()
+            }
+            result.addStatement("else -> %N.skipValue()", readerParam)
+            result.endControlFlow()
+            result.endControlFlow()
+        }
+        result.addStatement("else -> %N.skipValue()", readerParam)
+        result.endControlFlow()
+        result.endControlFlow()
+
+        result.beginControlFlow("%T.BEGIN_TAG ->", TOKEN)
+        result.addStatement("%N.beginTag()", readerParam)
+        result.beginControlFlow("when (%N.selectTag(%N))", readerParam, tagOptions)
+        for ((index, candidates) in tagNames.values.withIndex()) {
+            result.beginControlFlow("%L ->", index)
+            result.beginControlFlow("when")
+            for (binding in candidates) {
+                if (binding.kind == Kind.COLLECTION) {
+                    result.beginControlFlow("%L ->", namespaceCheck(binding) ?: CodeBlock.of("true"))
+                    result.addStatement("%N.add(%N.fromXml(%N))", binding.local, binding.adapter!!, readerParam)
+                } else {
+                    result.beginControlFlow("%L ->", matchCondition(binding, binding.adapter!!))
+                    result.addStatement("%N = %N.fromXml(%N)", binding.local, binding.adapter!!, readerParam)
+                    result.addStatement("%N = true", binding.setLocal)
+                }
+                result.addStatement("%N.endTag()", readerParam)
+                result.endControlFlow()
+            }
+            result.addStatement("else -> %N.skip()", readerParam)
+            result.endControlFlow()
+            result.endControlFlow()
+        }
+        result.addStatement("else -> %N.skip()", readerParam)
+        result.endControlFlow()
+        result.endControlFlow()
+
+        val text = bindings.firstOrNull { it.kind == Kind.TEXT }
+        if (text != null) {
+            result.beginControlFlow("%T.TEXT ->", TOKEN)
+            result.addStatement("%N = %N.from(%N.nextText())", text.local, text.converter!!, readerParam)
+            result.addStatement("%N = true", text.setLocal)
+            result.endControlFlow()
+        } else {
+            result.addStatement("%T.TEXT -> %N.skip()", TOKEN, readerParam)
+        }
+        result.addStatement("%T.END_DOCUMENT -> throw %T(%S)", TOKEN, XmlDataException::class, "Unexpected end of document")
+        result.addStatement(
+            "else -> throw %T(%S + %N + %S + %N.path)",
+            XmlDataException::class, "Unexpected ", token, " at path ", readerParam
+        )
+        result.endControlFlow()
+        result.addStatement("%N = %N.peek()", token, readerParam)
+        result.endControlFlow()
+
+        generateConstruction(result, locals)
         return result.build()
     }
 
+    /** Constructs the instance from the locals read in [generateFromXmlFun] and returns it. */
+    private fun generateConstruction(result: FunSpec.Builder, locals: NameAllocator) {
+        val instance = locals.newName("result")
+        val arguments = bindings.filter { it.parameter != null && !it.hasDefault }
+        result.addCode("val %N = %T(\n⇥", instance, className)
+        for (binding in arguments) {
+            val value = when {
+                binding.kind == Kind.COLLECTION || binding.typeName.isNullable -> CodeBlock.of("%N", binding.local)
+                else -> CodeBlock.of(
+                    "%N ?: throw %T(%S + %N.path)",
+                    binding.local, XmlDataException::class,
+                    "Required property '${binding.property.name}' ('${binding.xmlName}') missing at path ", readerParam
+                )
+            }
+            result.addCode("%N = %L,\n", binding.property.name, value)
+        }
+        result.addCode("⇤)\n")
+
+        // Properties with default values were left out of the call above, so the defaults apply
+        // unless the xml had a value for them.
+        val assigned = bindings.filter { (it.parameter == null || it.hasDefault) && Flag.Property.IS_VAR(it.property.flags) }
+        for (binding in assigned) {
+            result.addStatement("if (%L) %N.%N = %L", binding.isSet(), instance, binding.property.name, binding.readValue())
+        }
+        val copied = bindings.filter { it.hasDefault && !Flag.Property.IS_VAR(it.property.flags) }
+        if (copied.isEmpty()) {
+            result.addStatement("return %N", instance)
+            return
+        }
+        result.beginControlFlow("if (%L)", copied.map { it.isSet() }.joinToCode(" || "))
+        result.addCode("return %N.copy(\n⇥", instance)
+        for (binding in copied) {
+            result.addCode(
+                "%N = if (%L) %L else %N.%N,\n",
+                binding.property.name, binding.isSet(), binding.readValue(), instance, binding.property.name
+            )
+        }
+        result.addCode("⇤)\n")
+        result.endControlFlow()
+        result.addStatement("return %N", instance)
+    }
+
     private fun generateToXmlFun(): FunSpec {
         val result = FunSpec.builder("toXml")
             .addModifiers(KModifier.OVERRIDE)
             .addParameter(writerParam)
             .addParameter(valueParam)
-        kmClass.properties.forEach {
-            result.addStatement("%N.name(%S)", writerParam, it.name)
+
+        for (namespace in namespaces.values) {
+            result.addStatement("%N.namespace(%N)", writerParam, namespace)
+        }
+        // Attributes must be written before any tag or text.
+        for (binding in bindings.filter { it.kind == Kind.VALUE }) {
+            result.beginControlFlow("if (%N != null)", binding.converter!!)
+            writeNonNull(result, binding) { value ->
+                addStatement("%N.name(%L%S)", writerParam, binding.namespaceArgument(), binding.xmlName)
+                addStatement("%N.value(%N.to(%L))", writerParam, binding.converter!!, value)
+            }
+            result.endControlFlow()
+        }
+        for (binding in bindings) {
+            when (binding.kind) {
+                Kind.VALUE -> {
+                    result.beginControlFlow("if (%N != null)", binding.adapter!!)
+                    writeNonNull(result, binding) { value -> writeTag(this, binding, value) }
+                    result.endControlFlow()
+                }
+                Kind.COLLECTION -> {
+                    val orEmpty = if (binding.typeName.isNullable) ".orEmpty()" else ""
+                    result.beginControlFlow("for (element in %N.%N%L)", valueParam, binding.property.name, orEmpty)
+                    writeTag(result, binding, CodeBlock.of("element"))
+                    result.endControlFlow()
+                }
+                Kind.TEXT -> Unit
+            }
+        }
+        val text = bindings.firstOrNull { it.kind == Kind.TEXT }
+        if (text != null) {
+            writeNonNull(result, text) { value ->
+                addStatement("%N.text(%N.to(%L))", writerParam, text.converter!!, value)
+            }
         }
         return result.build()
     }
-}
\ No newline at end of file
+
+    private fun writeTag(result: FunSpec.Builder, binding: PropertyBinding, value: CodeBlock) {
+        result.addStatement("%N.beginTag(%L%S)", writerParam, binding.namespaceArgument(), binding.xmlName)
+        result.addStatement("%N.toXml(%N, %L)", binding.adapter!!, writerParam, value)
+        result.addStatement("%N.endTag()", writerParam)
+    }
+
+    /** Writes [binding]'s value with [write], skipping it if it is null. */
+    private fun writeNonNull(result: FunSpec.Builder, binding: PropertyBinding, write: FunSpec.Builder.(CodeBlock) -> Unit) {
+        if (!binding.typeName.isNullable) {
+            result.write(CodeBlock.of("%N.%N", valueParam, binding.property.name))
+            return
+        }
+        result.beginControlFlow("%N.%N?.let", valueParam, binding.property.name)
+        result.write(CodeBlock.of("it"))
+        result.endControlFlow()
+    }
+
+    /** Returns the comparison matching [binding]'s namespace, or null if it matches any namespace. */
+    private fun namespaceCheck(binding: PropertyBinding): CodeBlock? {
+        val expected = binding.namespace ?: return null
+        // Namespaces compare by id, which the reader resolves once per declaration.
+        val property = namespaces.getValue(expected.alias.ifEmpty { null } to expected.value)
+        return CodeBlock.of("%N.namespaceId == %N.id", readerParam, property)
+    }
+
+    /** Returns the condition under which [binding] is read through [delegate]. */
+    private fun matchCondition(binding: PropertyBinding, delegate: PropertySpec): CodeBlock =
+        listOfNotNull(CodeBlock.of("%N != null", delegate), namespaceCheck(binding)).joinToCode(" && ")
+
+    private fun PropertyBinding.namespaceArgument(): CodeBlock {
+        val namespace = namespace ?: return CodeBlock.of("")
+        return CodeBlock.of("%N, ", namespaces.getValue(namespace.alias.ifEmpty { null } to namespace.value))
+    }
+
+    private val PropertyBinding.adapter: PropertySpec?
+        get() {
+            if (adapterSpec == null && kind != Kind.TEXT) {
+                val adaptedType = if (kind == Kind.COLLECTION) elementTypeName!! else typeName.copy(nullable = false)
+                val builder = PropertySpec.builder(
+                    nameAllocator.newName("${property.name}Adapter"),
+                    XmlAdapter::class.asClassName().parameterizedBy(adaptedType).copy(nullable = kind == Kind.VALUE),
+                    KModifier.PRIVATE
+                )
+                if (kind == Kind.COLLECTION) {
+                    builder.initializer(
+                        "%N.adapter<%T>(%L, %L)\n⇥?: throw %T(%S)⇤",
+                        adaptersParam, adaptedType, javaType, annotations,
+                        IllegalArgumentException::class, "No XmlAdapter for ${property.name} in $className"
+                    )
+                } else {
+                    builder.initializer("%N.adapter<%T>(%L, %L)", adaptersParam, adaptedType, javaType, annotations)
+                }
+                adapterSpec = builder.build()
+            }
+            return adapterSpec
+        }
+
+    private val PropertyBinding.converter: PropertySpec?
+        get() {
+            if (converterSpec == null && kind != Kind.COLLECTION) {
+                val convertedType = typeName.copy(nullable = false)
+                val builder = PropertySpec.builder(
+                    nameAllocator.newName("${property.name}Converter"),
+                    TypeConverter::class.asClassName().parameterizedBy(convertedType).copy(nullable = kind == Kind.VALUE),
+                    KModifier.PRIVATE
+                )
+                if (kind == Kind.TEXT) {
+                    builder.initializer(
+                        "%N.converter<%T>(%L, %L)\n⇥?: throw %T(%S)⇤",
+                        adaptersParam, convertedType, javaType, annotations,
+                        IllegalArgumentException::class, "No TypeConverter for ${property.name} in $className"
+                    )
+                } else {
+                    // As in ClassXmlAdapter, a property without an adapter is written as an attribute.
+                    builder.initializer(
+                        "if (%N != null) null else %N.converter<%T>(%L, %L)\n⇥?: throw %T(%S)⇤",
+                        adapter!!, adaptersParam, convertedType, javaType, annotations,
+                        IllegalArgumentException::class, "No XmlAdapter or TypeConverter for ${property.name} in $className"
+                    )
+                }
+                converterSpec = builder.build()
+            }
+            return converterSpec
+        }
+
+    private fun error(message: String, element: VariableElement? = null) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element ?: type)
+    }
+
+    private fun KmType.toTypeName(): TypeName? {
+        val classifier = classifier
+        if (classifier !is KmClassifier.Class) {
+            error("@XmlClass properties must have concrete class types in $className")
+            return null
+        }
+        val raw = classifier.name.toClassName()
+        val typeName = if (arguments.isEmpty()) {
+            raw
+        } else {
+            raw.parameterizedBy(arguments.map { projection ->
+                val argument = projection.type?.toTypeName() ?: return@map STAR
+                when (projection.variance) {
+                    KmVariance.OUT -> WildcardTypeName.producerOf(argument)
+                    KmVariance.IN -> WildcardTypeName.consumerOf(argument)
+                    else -> argument
+                }
+            })
+        }
+        return typeName.copy(nullable = Flag.Type.IS_NULLABLE(flags))
+    }
+
+    /** Returns code for the [java.lang.reflect.Type] of this type, as ClassXmlAdapter would see it. */
+    private fun KmType.javaType(boxed: Boolean): CodeBlock {
+        val raw = (classifier as KmClassifier.Class).name.toClassName()
+        if (arguments.isEmpty()) {
+            return if (boxed || Flag.Type.IS_NULLABLE(flags)) {
+                CodeBlock.of("%T::class.javaObjectType", raw)
+            } else {
+                CodeBlock.of("%T::class.java", raw)
+            }
+        }
+        val typeArguments = arguments.map {
+            it.type?.javaType(boxed = true) ?: CodeBlock.of("%T.subtypeOf(%T::class.java)", Types::class, ANY)
+        }
+        return CodeBlock.of("%T.newParameterizedType(%T::class.java, %L)", Types::class, raw, typeArguments.joinToCode())
+    }
+
+    private fun TypeName.rawClassName(): ClassName = when (this) {
+        is ParameterizedTypeName -> rawType
+        is ClassName -> copy(nullable = false) as ClassName
+        else -> ANY
+    }
+
+    private enum class Kind { VALUE, COLLECTION, TEXT }
+
+    /** A property bound to xml, like a FieldBinding in ClassXmlAdapter. */
+    private class PropertyBinding(
+        val property: KmProperty,
+        val parameter: KmValueParameter?,
+        val xmlName: String,
+        val kind: Kind,
+        val typeName: TypeName,
+        val elementTypeName: TypeName?,
+        val javaType: CodeBlock,
+        val annotations: CodeBlock,
+        val namespace: XmlNamespace?,
+        val collectionType: ClassName?
+    ) {
+        var adapterSpec: PropertySpec? = null
+        var converterSpec: PropertySpec? = null
+        lateinit var local: String
+        lateinit var setLocal: String
+
+        val hasDefault: Boolean
+            get() = parameter != null && Flag.ValueParameter.DECLARES_DEFAULT_VALUE(parameter.flags)
+
+        /** Code that is true if the xml had a value for this property. */
+        fun isSet(): CodeBlock =
+            if (kind == Kind.COLLECTION) CodeBlock.of("%N.isNotEmpty()", local) else CodeBlock.of("%N", setLocal)
+
+        /** Code for the value read for this property, once [isSet] is true. */
+        fun readValue(): CodeBlock =
+            if (kind == Kind.COLLECTION || typeName.isNullable) CodeBlock.of("%N", local) else CodeBlock.of("%N!!", local)
+    }
+
+    private companion object {
+        val TOKEN = XmlReader.Token::class.asClassName()
+        val NO_ANNOTATIONS = MemberName("com.jonathansteele.parsnip", "NO_ANNOTATIONS")
+        val XML_ANNOTATIONS = MemberName("com.jonathansteele.parsnip", "xmlAnnotations", isExtension = true)
+        val ARRAY_LIST = ClassName("java.util", "ArrayList")
+        val LINKED_HASH_SET = ClassName("java.util", "LinkedHashSet")
+        val SET_TYPES = setOf("kotlin/collections/Set", "kotlin/collections/MutableSet")
+        val COLLECTION_TYPES = SET_TYPES + setOf(
+            "kotlin/collections/List",
+            "kotlin/collections/MutableList",
+            "kotlin/collections/Collection",
+            "kotlin/collections/MutableCollection"
+        )
+
+        /** Converts a kotlinx-metadata class name like `a/b/Outer.Inner` to a [ClassName]. */
+        fun String.toClassName(): ClassName {
+            val packageName = substringBeforeLast('/', "").replace('/', '.')
+            return ClassName(packageName, substringAfterLast('/').split('.'))
+        }
+    }
+}
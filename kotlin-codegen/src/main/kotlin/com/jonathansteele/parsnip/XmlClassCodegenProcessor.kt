@@ -1,25 +1,28 @@
 package com.jonathansteele.parsnip
 
 import com.google.auto.service.AutoService
+import com.jonathansteele.parsnip.Types as ParsnipTypes
 import com.jonathansteele.parsnip.annotations.XmlClass
 import com.squareup.kotlinpoet.metadata.KotlinPoetMetadataPreview
 import com.squareup.kotlinpoet.metadata.toKmClass
 import net.ltgt.gradle.incap.IncrementalAnnotationProcessor
-import net.ltgt.gradle.incap.IncrementalAnnotationProcessorType.ISOLATING
+import net.ltgt.gradle.incap.IncrementalAnnotationProcessorType.AGGREGATING
 import javax.annotation.processing.*
 import javax.lang.model.SourceVersion
 import javax.lang.model.element.TypeElement
 import javax.lang.model.util.Elements
 import javax.lang.model.util.Types
 import javax.tools.Diagnostic
+import javax.tools.StandardLocation
 
 /**
- * An annotation processor that reads Kotlin data classes and generates TikXml TypeAdapter for them.
+ * An annotation processor that reads Kotlin data classes and generates Parsnip XmlAdapters for them.
  * This generates Kotlin code, and understands basic Kotlin language features like default values
- * and companion objects.
+ * and companion objects. The classes that adapters were generated for are listed in an index, so
+ * that Parsnip can find their adapters without looking at their annotations.
  */
 @AutoService(Processor::class)
-@IncrementalAnnotationProcessor(ISOLATING)
+@IncrementalAnnotationProcessor(AGGREGATING)
 class XmlClassCodegenProcessor : AbstractProcessor() {
     private lateinit var types: Types
     private lateinit var elements: Elements
@@ -27,6 +30,10 @@ class XmlClassCodegenProcessor : AbstractProcessor() {
     private lateinit var messager: Messager
     private val annotation = XmlClass::class.java
 
+    // Generated adapter names by the binary names of their classes, for the index.
+    private val generatedAdapters = sortedMapOf<String, String>()
+    private val indexedTypes = mutableListOf<TypeElement>()
+
     override fun getSupportedAnnotationTypes(): Set<String> = setOf(annotation.canonicalName)
 
     override fun getSupportedSourceVersion(): SourceVersion = SourceVersion.latest()
@@ -59,13 +66,41 @@ class XmlClassCodegenProcessor : AbstractProcessor() {
             }
             val xmlClass = type.getAnnotation(annotation)
             if (xmlClass.generateAdapter && xmlClass.generator.isEmpty()) {
-                val typeMetadata = type.getAnnotation(Metadata::class.java) ?: continue
-                val packageName = typeMetadata.packageName
+                val typeMetadata = type.getAnnotation(Metadata::class.java)
+                if (typeMetadata == null) {
+                    messager.printMessage(
+                        Diagnostic.Kind.ERROR,
+                        "@XmlClass can't be applied to $type: must be a Kotlin class",
+                        type
+                    )
+                    continue
+                }
                 val kmClass = typeMetadata.toKmClass()
-                val adapterGenerator = AdapterGenerator(kmClass, packageName, type)
-                adapterGenerator.prepare().writeTo(filer)
+                val adapterGenerator = AdapterGenerator(kmClass, type, elements, messager)
+                val fileSpec = adapterGenerator.prepare() ?: continue
+                fileSpec.writeTo(filer)
+                val binaryName = elements.getBinaryName(type).toString()
+                generatedAdapters[binaryName] = ParsnipTypes.generatedXmlAdapterName(binaryName)
+                indexedTypes += type
             }
         }
+        if (roundEnv.processingOver() && generatedAdapters.isNotEmpty()) {
+            writeIndex()
+        }
         return false
     }
+
+    private fun writeIndex() {
+        val resource = filer.createResource(
+            StandardLocation.CLASS_OUTPUT,
+            "",
+            ParsnipTypes.GENERATED_ADAPTER_INDEX,
+            *indexedTypes.toTypedArray()
+        )
+        resource.openWriter().use { writer ->
+            for ((className, adapterName) in generatedAdapters) {
+                writer.write("$className $adapterName\n")
+            }
+        }
+    }
 }
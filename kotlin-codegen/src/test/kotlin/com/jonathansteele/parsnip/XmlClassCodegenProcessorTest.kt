@@ -0,0 +1,162 @@
+package com.jonathansteele.parsnip
+
+import com.tschuchort.compiletesting.KotlinCompilation
+import com.tschuchort.compiletesting.SourceFile
+import org.junit.Assert
+import org.junit.Test
+import java.io.File
+import java.net.URLClassLoader
+
+class XmlClassCodegenProcessorTest {
+    @Test
+    fun checkGeneratedAdapterReadsAndWrites() {
+        val result = compile(
+            """
+            package test
+
+            import com.jonathansteele.parsnip.annotations.Namespace
+            import com.jonathansteele.parsnip.annotations.Text
+            import com.jonathansteele.parsnip.annotations.XmlClass
+
+            @XmlClass(generateAdapter = true)
+            data class Entry(val id: String, @Text val text: String)
+
+            @XmlClass(generateAdapter = true)
+            data class Feed(
+                @Namespace("a", "urn:a") val lang: String,
+                val entry: Entry,
+                @Namespace("a", "urn:a") val item: List<Entry>,
+                val link: List<Entry>
+            )
+            """
+        )
+        Assert.assertEquals(result.messages, KotlinCompilation.ExitCode.OK, result.exitCode)
+        result.classLoader.loadClass("test.FeedXmlAdapter")
+        result.classLoader.loadClass("test.EntryXmlAdapter")
+
+        val adapter = Parsnip.Builder().build().adapter<Any>(result.classLoader.loadClass("test.Feed"))
+        val feed = adapter.fromXml(
+            "<Feed xmlns:a=\"urn:a\" a:lang=\"en\" lang=\"ignored\">" +
+                "<entry id=\"1\">first</entry>" +
+                "<a:item id=\"2\">second</a:item><item id=\"ignored\">ignored</item><a:item id=\"3\">third</a:item>" +
+                "<link id=\"4\">fourth</link>" +
+                "</Feed>"
+        )
+        val expected = "Feed(lang=en, entry=Entry(id=1, text=first), " +
+            "item=[Entry(id=2, text=second), Entry(id=3, text=third)], link=[Entry(id=4, text=fourth)])"
+        Assert.assertEquals(expected, feed.toString())
+        Assert.assertEquals(expected, adapter.fromXml(adapter.toXml(feed)).toString())
+    }
+
+    @Test
+    fun checkGeneratedAdapterKeepsDefaults() {
+        val result = compile(
+            """
+            package test
+
+            import com.jonathansteele.parsnip.annotations.XmlClass
+
+            @XmlClass(generateAdapter = true)
+            data class Settings(val name: String, val mode: String = "auto", var size: Int = 10)
+            """
+        )
+        Assert.assertEquals(result.messages, KotlinCompilation.ExitCode.OK, result.exitCode)
+
+        val adapter = Parsnip.Builder().build().adapter<Any>(result.classLoader.loadClass("test.Settings"))
+        Assert.assertEquals("Settings(name=a, mode=auto, size=10)", adapter.fromXml("<Settings name=\"a\"/>").toString())
+        Assert.assertEquals(
+            "Settings(name=a, mode=manual, size=3)",
+            adapter.fromXml("<Settings mode=\"manual\" name=\"a\" size=\"3\"/>").toString()
+        )
+        Assert.assertEquals(
+            "Settings(name=a, mode=auto, size=3)",
+            adapter.fromXml("<Settings size=\"3\" name=\"a\"/>").toString()
+        )
+    }
+
+    @Test
+    fun checkGeneratedAdapterMatchesNamespacedTag() {
+        val result = compile(
+            """
+            package test
+
+            import com.jonathansteele.parsnip.annotations.Namespace
+            import com.jonathansteele.parsnip.annotations.XmlClass
+
+            @XmlClass(generateAdapter = true)
+            data class Link(val href: String)
+
+            @XmlClass(generateAdapter = true)
+            data class Item(@Namespace("m", "urn:media") val link: Link)
+            """
+        )
+        Assert.assertEquals(result.messages, KotlinCompilation.ExitCode.OK, result.exitCode)
+
+        val adapter = Parsnip.Builder().build().adapter<Any>(result.classLoader.loadClass("test.Item"))
+        // The namespace is matched by its URI, whatever prefix the document gives it.
+        val item = adapter.fromXml(
+            "<Item xmlns:media=\"urn:media\" xmlns:o=\"urn:other\">" +
+                "<o:link href=\"other\"/><link href=\"plain\"/><media:link href=\"media\"/>" +
+                "</Item>"
+        )
+        Assert.assertEquals("Item(link=Link(href=media))", item.toString())
+        Assert.assertEquals(item.toString(), adapter.fromXml(adapter.toXml(item)).toString())
+    }
+
+    @Test
+    fun checkGeneratedAdapterIsFoundThroughIndex() {
+        val result = compile(
+            """
+            package test
+
+            import com.jonathansteele.parsnip.annotations.Text
+            import com.jonathansteele.parsnip.annotations.XmlClass
+
+            @XmlClass(generateAdapter = true)
+            data class Entry(val id: String, @Text val text: String)
+
+            @XmlClass(generateAdapter = true)
+            data class Other(val id: String, @Text val text: String)
+            """
+        )
+        Assert.assertEquals(result.messages, KotlinCompilation.ExitCode.OK, result.exitCode)
+        val index = File(result.outputDirectory, Types.GENERATED_ADAPTER_INDEX)
+        Assert.assertEquals(
+            setOf("test.Entry test.EntryXmlAdapter", "test.Other test.OtherXmlAdapter"),
+            index.readLines().filter { it.isNotEmpty() }.toSet()
+        )
+
+        // Point Entry at the adapter generated for Other, so only a lookup through the index finds it.
+        index.writeText("test.Entry test.OtherXmlAdapter\n")
+        val classLoader = URLClassLoader(arrayOf(result.outputDirectory.toURI().toURL()), javaClass.classLoader)
+        val adapter = Parsnip.Builder().build().adapter<Any>(classLoader.loadClass("test.Entry"))
+        Assert.assertEquals("Other(id=1, text=one)", adapter.fromXml("<Entry id=\"1\">one</Entry>").toString())
+    }
+
+    @Test
+    fun checkNonKotlinClassIsAnError() {
+        val result = KotlinCompilation().apply {
+            sources = listOf(
+                SourceFile.java(
+                    "JavaObject.java",
+                    """
+                    package test;
+
+                    @com.jonathansteele.parsnip.annotations.XmlClass(generateAdapter = true)
+                    public class JavaObject {}
+                    """
+                )
+            )
+            annotationProcessors = listOf(XmlClassCodegenProcessor())
+            inheritClassPath = true
+        }.compile()
+        Assert.assertEquals(KotlinCompilation.ExitCode.COMPILATION_ERROR, result.exitCode)
+        Assert.assertTrue(result.messages, result.messages.contains("must be a Kotlin class"))
+    }
+
+    private fun compile(source: String): KotlinCompilation.Result = KotlinCompilation().apply {
+        sources = listOf(SourceFile.kotlin("Source.kt", source.trimIndent()))
+        annotationProcessors = listOf(XmlClassCodegenProcessor())
+        inheritClassPath = true
+    }.compile()
+}
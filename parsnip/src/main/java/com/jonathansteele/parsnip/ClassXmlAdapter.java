@@ -16,8 +16,13 @@
 
 package com.jonathansteele.parsnip;
 
+import com.jonathansteele.parsnip.annotations.Base64;
 import com.jonathansteele.parsnip.annotations.SerializedName;
 import com.jonathansteele.parsnip.annotations.Text;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Source;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
@@ -38,7 +43,7 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
         @Override
         public XmlAdapter<?> create(Type type, Set<? extends Annotation> annotations, XmlAdapters adapters) {
             Class<?> rawType = Types.getRawType(type);
-            if (rawType.isInterface() || rawType.isEnum() || isPlatformType(rawType) || rawType.isPrimitive())
+            if (rawType.isInterface() || rawType.isEnum() || isPlatformType(rawType) || rawType.isPrimitive() || rawType.isArray())
                 return null;
             if (!annotations.isEmpty()) return null;
 
@@ -59,7 +64,7 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
             ArrayList<AttributeFieldBinding<?>> attributes = new ArrayList<>();
             ArrayList<TagFieldBinding<?>> tags = new ArrayList<>();
             // Only a single text, but this makes it easier to check for duplicates
-            ArrayList<TextFieldBinding<?>> text = new ArrayList<>(1);
+            ArrayList<FieldBinding<?>> text = new ArrayList<>(1);
             for (Type t = type; t != Object.class; t = Types.getGenericSuperclass(t)) {
                 createFieldBindings(adapters, t, attributes, tags, text);
             }
@@ -71,7 +76,7 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
                 XmlAdapters adapters, Type type,
                 ArrayList<AttributeFieldBinding<?>> attributes,
                 ArrayList<TagFieldBinding<?>> tags,
-                ArrayList<TextFieldBinding<?>> text
+                ArrayList<FieldBinding<?>> text
         ) {
             Class<?> rawType = Types.getRawType(type);
             boolean platformType = isPlatformType(rawType);
@@ -100,11 +105,7 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
                     tags.add(new CollectionFieldBinding<>(field, name, namespace, adapter, collectionFactory));
                 } else {
                     if (field.isAnnotationPresent(Text.class)) {
-                        TypeConverter<?> converter = adapters.converter(fieldType, annotations);
-                        if (converter == null) {
-                            throw new IllegalArgumentException("No TypeConverter for type " + fieldType + " and annotations " + annotations);
-                        }
-                        TextFieldBinding<?> fieldBinding = new TextFieldBinding<>(field, converter);
+                        FieldBinding<?> fieldBinding = textBinding(field, fieldType, annotations, adapters);
                         if (!text.isEmpty()) {
                             FieldBinding<?> replaced = tags.get(0);
                             throw new IllegalArgumentException("Text annotation collision: @Text is on both '"
@@ -130,7 +131,7 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
                             if (converter == null) {
                                 throw new IllegalArgumentException("No XmlAdapter or TypeConverter for type " + fieldType + " and annotations " + annotations);
                             }
-                            AttributeFieldBinding<?> fieldBinding = new AttributeFieldBinding<>(field, name, namespace, converter);
+                            AttributeFieldBinding<?> fieldBinding = attributeBinding(field, name, namespace, converter);
                             FieldBinding<?> replaced = getFieldBindingAttributes(attributes, name, namespace);
                             // Store it using the field's name. If there was already a field with this name, fail!
                             if (replaced != null) {
@@ -206,7 +207,15 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
     private final ClassFactory<T> classFactory;
     private final ArrayList<AttributeFieldBinding<?>> attributes;
     private final ArrayList<TagFieldBinding<?>> tags;
-    private final TextFieldBinding<?> text;
+    private final FieldBinding<?> text;
+    // Hashed views of attributes and tags for reading, built once so each lookup is a single probe.
+    private final FieldBindingTable<AttributeFieldBinding<?>> attributeTable;
+    private final FieldBindingTable<TagFieldBinding<?>> tagTable;
+    // Distinct attribute and tag names, which the reader matches as bytes without decoding them.
+    private final String[] attributeNames;
+    private final XmlReader.Options attributeOptions;
+    private final String[] tagNames;
+    private final XmlReader.Options tagOptions;
     // Namespaces to declare when writing.
     private LinkedHashSet<Namespace> declareNamespaces;
 
@@ -214,12 +223,26 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
             ClassFactory<T> classFactory,
             ArrayList<AttributeFieldBinding<?>> attributes,
             ArrayList<TagFieldBinding<?>> tags,
-            TextFieldBinding<?> text
+            FieldBinding<?> text
     ) {
         this.classFactory = classFactory;
         this.attributes = attributes;
         this.tags = tags;
         this.text = text;
+        this.attributeTable = new FieldBindingTable<>(attributes);
+        this.tagTable = new FieldBindingTable<>(tags);
+        this.attributeNames = distinctNames(attributes);
+        this.attributeOptions = XmlReader.Options.of(attributeNames);
+        this.tagNames = distinctNames(tags);
+        this.tagOptions = XmlReader.Options.of(tagNames);
+    }
+
+    private static String[] distinctNames(List<? extends NamedFieldBinding<?>> bindings) {
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        for (NamedFieldBinding<?> binding : bindings) {
+            names.add(binding.name);
+        }
+        return names.toArray(new String[0]);
     }
 
     private LinkedHashSet<Namespace> initDeclareNamespaces() {
@@ -267,17 +290,17 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
         }
 
         try {
-            Namespace namespace = new Namespace();
             XmlReader.Token token = reader.peek();
             while (token != XmlReader.Token.END_TAG) {
                 switch (token) {
                     case ATTRIBUTE: {
-                        String name = reader.nextAttribute();
-                        FieldBinding<?> fieldBinding = getFieldBindingAttributes(attributes, name, namespace);
+                        int index = reader.selectAttribute(attributeOptions);
+                        FieldBinding<?> fieldBinding = index != -1
+                                ? attributeTable.get(attributeNames[index], reader.getNamespaceId()) : null;
                         if (fieldBinding != null) {
                             fieldBinding.read(reader, result);
                         } else {
-                            reader.skip();
+                            reader.skipValue();
                         }
                         break;
                     }
@@ -292,8 +315,9 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
                     }
                     case BEGIN_TAG: {
                         reader.beginTag();
-                        String name = reader.nextTagName();
-                        FieldBinding<?> fieldBinding = getFieldBindingTags(tags, name, namespace);
+                        int index = reader.selectTag(tagOptions);
+                        FieldBinding<?> fieldBinding = index != -1
+                                ? tagTable.get(tagNames[index], reader.getNamespaceId()) : null;
                         if (fieldBinding != null) {
                             fieldBinding.read(reader, result);
                         } else {
@@ -374,22 +398,77 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
         return expected.equals(actual);
     }
 
+    /**
+     * An open-addressing hash table from (name, namespace) to field binding. A binding without a
+     * namespace matches every namespace, so a lookup first probes for the qualified key and then
+     * for the unqualified one. This gives the same result as scanning the bindings in order, since
+     * an unqualified binding declared before a qualified one with the same name is a collision.
+     */
+    private static final class FieldBindingTable<B extends NamedFieldBinding<?>> {
+        private final NamedFieldBinding<?>[] table;
+        private final int mask;
+
+        FieldBindingTable(List<? extends B> bindings) {
+            int capacity = 2;
+            while (capacity < bindings.size() * 2) capacity <<= 1;
+            table = new NamedFieldBinding<?>[capacity];
+            mask = capacity - 1;
+            for (B binding : bindings) {
+                int i = hash(binding.name, binding.namespaceId) & mask;
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = binding;
+            }
+        }
+
+        /**
+         * Returns the binding for {@code name} read in the namespace with {@code namespaceId}, or
+         * null if there is none.
+         */
+        B get(String name, int namespaceId) {
+            if (namespaceId != Namespace.NO_ID) {
+                B qualified = probe(name, namespaceId);
+                if (qualified != null) return qualified;
+            }
+            return probe(name, Namespace.NO_ID);
+        }
+
+        @SuppressWarnings("unchecked") // Only instances of B are inserted.
+        private B probe(String name, int namespaceId) {
+            for (int i = hash(name, namespaceId) & mask; ; i = (i + 1) & mask) {
+                NamedFieldBinding<?> binding = table[i];
+                if (binding == null) return null;
+                if (binding.namespaceId == namespaceId && binding.name.equals(name)) {
+                    return (B) binding;
+                }
+            }
+        }
+
+        private static int hash(String name, int namespaceId) {
+            int h = name.hashCode() * 31 + namespaceId;
+            return h ^ (h >>> 16);
+        }
+    }
+
     private static abstract class FieldBinding<T> {
         final Field field;
+        final FieldAccessor accessor;
 
         FieldBinding(Field field) {
             this.field = field;
+            this.accessor = FieldAccessor.of(field);
         }
 
         void read(XmlReader reader, Object value) throws IOException, IllegalAccessException {
             Object fieldValue = readValue(reader);
-            field.set(value, fieldValue);
+            accessor.set(value, fieldValue);
         }
 
         @SuppressWarnings("unchecked")
             // We require that field's values are of type T.
         void write(XmlWriter writer, Object value) throws IllegalAccessException, IOException {
-            T fieldValue = (T) field.get(value);
+            T fieldValue = (T) accessor.get(value);
             writeValue(writer, fieldValue);
         }
 
@@ -398,15 +477,25 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
         abstract void writeValue(XmlWriter writer, T value) throws IOException;
     }
 
-    private static class TagFieldBinding<T> extends FieldBinding<T> {
+    private static abstract class NamedFieldBinding<T> extends FieldBinding<T> {
         final String name;
         final Namespace namespace;
-        final XmlAdapter<T> adapter;
+        // The id of the namespace to match, or NO_ID if this binding matches any namespace.
+        final int namespaceId;
 
-        TagFieldBinding(Field field, String name, Namespace namespace, XmlAdapter<T> adapter) {
+        NamedFieldBinding(Field field, String name, Namespace namespace) {
             super(field);
             this.name = name;
             this.namespace = namespace;
+            this.namespaceId = namespace != null ? namespace.getId() : Namespace.NO_ID;
+        }
+    }
+
+    private static class TagFieldBinding<T> extends NamedFieldBinding<T> {
+        final XmlAdapter<T> adapter;
+
+        TagFieldBinding(Field field, String name, Namespace namespace, XmlAdapter<T> adapter) {
+            super(field, name, namespace);
             this.adapter = adapter;
         }
 
@@ -429,15 +518,11 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
         }
     }
 
-    private static class AttributeFieldBinding<T> extends FieldBinding<T> {
-        final String name;
-        final Namespace namespace;
+    private static class AttributeFieldBinding<T> extends NamedFieldBinding<T> {
         final TypeConverter<T> converter;
 
         AttributeFieldBinding(Field field, String name, Namespace namespace, TypeConverter<T> converter) {
-            super(field);
-            this.name = name;
-            this.namespace = namespace;
+            super(field, name, namespace);
             this.converter = converter;
         }
 
@@ -448,12 +533,160 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
 
         @Override
         void writeValue(XmlWriter writer, T value) {
+            writeName(writer);
+            writer.value(converter.to(value));
+        }
+
+        void writeName(XmlWriter writer) {
             if (namespace == null) {
                 writer.name(name);
             } else {
                 writer.name(namespace, name);
             }
-            writer.value(converter.to(value));
+        }
+    }
+
+    /**
+     * Returns the binding for a field annotated with {@link Text}. Unqualified {@link ByteString} and
+     * {@link Source} fields take the raw bytes of the text, which are never decoded to a String. A
+     * {@link BufferedSource} is written from a peek, so it can be written again, but a plain
+     * {@link Source} is exhausted by writing it and can only be written once.
+     * {@code byte[]} and {@link Base64} {@link ByteString} fields decode the text as it is read.
+     */
+    private static FieldBinding<?> textBinding(Field field, Type fieldType, Set<? extends Annotation> annotations, XmlAdapters adapters) {
+        boolean base64 = annotations.size() == 1 && annotations.iterator().next() instanceof Base64;
+        if (Types.getRawType(fieldType) == byte[].class && (annotations.isEmpty() || base64)) {
+            return new Base64ByteArrayTextFieldBinding(field);
+        } else if (fieldType == ByteString.class && base64) {
+            return new Base64ByteStringTextFieldBinding(field);
+        }
+        if (annotations.isEmpty()) {
+            if (fieldType == ByteString.class) {
+                return new ByteStringTextFieldBinding(field);
+            } else if (fieldType == Source.class || fieldType == BufferedSource.class) {
+                return new SourceTextFieldBinding(field);
+            }
+        }
+        TypeConverter<?> converter = adapters.converter(fieldType, annotations);
+        if (converter == null) {
+            throw new IllegalArgumentException("No TypeConverter for type " + fieldType + " and annotations " + annotations);
+        }
+        return primitiveTextBinding(field, converter);
+    }
+
+    /**
+     * Returns a binding that writes primitive text without boxing or creating a String when the
+     * converter supports it, otherwise a plain {@link TextFieldBinding}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static TextFieldBinding<?> primitiveTextBinding(Field field, TypeConverter<?> converter) {
+        Class<?> fieldType = field.getType();
+        if (fieldType == int.class && converter instanceof IntConverter) {
+            return new IntTextFieldBinding(field, (IntConverter) converter);
+        } else if (fieldType == long.class && converter instanceof LongConverter) {
+            return new LongTextFieldBinding(field, (LongConverter) converter);
+        } else if (fieldType == double.class && converter instanceof DoubleConverter) {
+            return new DoubleTextFieldBinding(field, (DoubleConverter) converter);
+        }
+        return new TextFieldBinding(field, converter);
+    }
+
+    /**
+     * Returns a binding that reads primitive fields without boxing when the converter supports it,
+     * otherwise a plain {@link AttributeFieldBinding}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AttributeFieldBinding<?> attributeBinding(Field field, String name, Namespace namespace, TypeConverter<?> converter) {
+        Class<?> fieldType = field.getType();
+        if (fieldType == int.class && converter instanceof IntConverter) {
+            return new IntAttributeFieldBinding(field, name, namespace, (IntConverter) converter);
+        } else if (fieldType == long.class && converter instanceof LongConverter) {
+            return new LongAttributeFieldBinding(field, name, namespace, (LongConverter) converter);
+        } else if (fieldType == double.class && converter instanceof DoubleConverter) {
+            return new DoubleAttributeFieldBinding(field, name, namespace, (DoubleConverter) converter);
+        } else if (fieldType == boolean.class && converter instanceof BooleanConverter) {
+            return new BooleanAttributeFieldBinding(field, name, namespace, (BooleanConverter) converter);
+        }
+        return new AttributeFieldBinding(field, name, namespace, converter);
+    }
+
+    private static final class IntAttributeFieldBinding extends AttributeFieldBinding<Integer> {
+        final IntConverter intConverter;
+
+        IntAttributeFieldBinding(Field field, String name, Namespace namespace, IntConverter converter) {
+            super(field, name, namespace, converter);
+            this.intConverter = converter;
+        }
+
+        @Override
+        void read(XmlReader reader, Object value) throws IllegalAccessException {
+            accessor.setInt(value, intConverter.readInt(reader));
+        }
+
+        @Override
+        void write(XmlWriter writer, Object value) throws IllegalAccessException {
+            writeName(writer);
+            intConverter.writeInt(writer, accessor.getInt(value));
+        }
+    }
+
+    private static final class LongAttributeFieldBinding extends AttributeFieldBinding<Long> {
+        final LongConverter longConverter;
+
+        LongAttributeFieldBinding(Field field, String name, Namespace namespace, LongConverter converter) {
+            super(field, name, namespace, converter);
+            this.longConverter = converter;
+        }
+
+        @Override
+        void read(XmlReader reader, Object value) throws IllegalAccessException {
+            accessor.setLong(value, longConverter.readLong(reader));
+        }
+
+        @Override
+        void write(XmlWriter writer, Object value) throws IllegalAccessException {
+            writeName(writer);
+            longConverter.writeLong(writer, accessor.getLong(value));
+        }
+    }
+
+    private static final class DoubleAttributeFieldBinding extends AttributeFieldBinding<Double> {
+        final DoubleConverter doubleConverter;
+
+        DoubleAttributeFieldBinding(Field field, String name, Namespace namespace, DoubleConverter converter) {
+            super(field, name, namespace, converter);
+            this.doubleConverter = converter;
+        }
+
+        @Override
+        void read(XmlReader reader, Object value) throws IllegalAccessException {
+            accessor.setDouble(value, doubleConverter.readDouble(reader));
+        }
+
+        @Override
+        void write(XmlWriter writer, Object value) throws IllegalAccessException {
+            writeName(writer);
+            doubleConverter.writeDouble(writer, accessor.getDouble(value));
+        }
+    }
+
+    private static final class BooleanAttributeFieldBinding extends AttributeFieldBinding<Boolean> {
+        final BooleanConverter booleanConverter;
+
+        BooleanAttributeFieldBinding(Field field, String name, Namespace namespace, BooleanConverter converter) {
+            super(field, name, namespace, converter);
+            this.booleanConverter = converter;
+        }
+
+        @Override
+        void read(XmlReader reader, Object value) throws IllegalAccessException {
+            accessor.setBoolean(value, booleanConverter.readBoolean(reader));
+        }
+
+        @Override
+        void write(XmlWriter writer, Object value) throws IllegalAccessException {
+            writeName(writer);
+            writer.value(booleanConverter.to(accessor.getBoolean(value)));
         }
     }
 
@@ -476,6 +709,122 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
         }
     }
 
+    private static final class IntTextFieldBinding extends TextFieldBinding<Integer> {
+        final IntConverter intConverter;
+
+        IntTextFieldBinding(Field field, IntConverter converter) {
+            super(field, converter);
+            this.intConverter = converter;
+        }
+
+        @Override
+        void write(XmlWriter writer, Object value) throws IllegalAccessException {
+            intConverter.writeIntText(writer, accessor.getInt(value));
+        }
+    }
+
+    private static final class LongTextFieldBinding extends TextFieldBinding<Long> {
+        final LongConverter longConverter;
+
+        LongTextFieldBinding(Field field, LongConverter converter) {
+            super(field, converter);
+            this.longConverter = converter;
+        }
+
+        @Override
+        void write(XmlWriter writer, Object value) throws IllegalAccessException {
+            longConverter.writeLongText(writer, accessor.getLong(value));
+        }
+    }
+
+    private static final class DoubleTextFieldBinding extends TextFieldBinding<Double> {
+        final DoubleConverter doubleConverter;
+
+        DoubleTextFieldBinding(Field field, DoubleConverter converter) {
+            super(field, converter);
+            this.doubleConverter = converter;
+        }
+
+        @Override
+        void write(XmlWriter writer, Object value) throws IllegalAccessException {
+            doubleConverter.writeDoubleText(writer, accessor.getDouble(value));
+        }
+    }
+
+    private static final class ByteStringTextFieldBinding extends FieldBinding<ByteString> {
+        ByteStringTextFieldBinding(Field field) {
+            super(field);
+        }
+
+        @Override
+        ByteString readValue(XmlReader reader) {
+            return reader.nextTextAsByteString();
+        }
+
+        @Override
+        void writeValue(XmlWriter writer, ByteString value) {
+            if (value != null) writer.text(value);
+        }
+    }
+
+    /** Reads the text into a {@link Buffer}, which is both a {@link Source} and a {@link BufferedSource}. */
+    private static final class SourceTextFieldBinding extends FieldBinding<Source> {
+        SourceTextFieldBinding(Field field) {
+            super(field);
+        }
+
+        @Override
+        Source readValue(XmlReader reader) {
+            Buffer buffer = new Buffer();
+            reader.nextTextTo(buffer);
+            return buffer;
+        }
+
+        @Override
+        void writeValue(XmlWriter writer, Source value) {
+            if (value instanceof BufferedSource) {
+                // Peeking leaves the bytes in place for the next time the object is written.
+                writer.text(((BufferedSource) value).peek());
+            } else if (value != null) {
+                writer.text(value);
+            }
+        }
+    }
+
+    private static final class Base64ByteArrayTextFieldBinding extends FieldBinding<byte[]> {
+        Base64ByteArrayTextFieldBinding(Field field) {
+            super(field);
+        }
+
+        @Override
+        byte[] readValue(XmlReader reader) {
+            Buffer buffer = new Buffer();
+            reader.nextBase64To(buffer);
+            return buffer.readByteArray();
+        }
+
+        @Override
+        void writeValue(XmlWriter writer, byte[] value) {
+            if (value != null) writer.base64(value);
+        }
+    }
+
+    private static final class Base64ByteStringTextFieldBinding extends FieldBinding<ByteString> {
+        Base64ByteStringTextFieldBinding(Field field) {
+            super(field);
+        }
+
+        @Override
+        ByteString readValue(XmlReader reader) {
+            return reader.nextBase64();
+        }
+
+        @Override
+        void writeValue(XmlWriter writer, ByteString value) {
+            if (value != null) writer.base64(value);
+        }
+    }
+
     private static class CollectionFieldBinding<T> extends TagFieldBinding<T> {
         final CollectionFactory collectionFactory;
 
@@ -487,9 +836,9 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
         @SuppressWarnings("unchecked")
         void init(Object value) throws IllegalAccessException {
             // Ensure field holds a collection.
-            Collection<T> currentValue = (Collection<T>) field.get(value);
+            Collection<T> currentValue = (Collection<T>) accessor.get(value);
             if (currentValue == null) {
-                field.set(value, collectionFactory.newCollection());
+                accessor.set(value, collectionFactory.newCollection());
             }
         }
 
@@ -498,7 +847,7 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
             // We require that field's values are of type Collection<T>.
         void read(XmlReader reader, Object value) throws IOException, IllegalAccessException {
             T additionalValue = readValue(reader);
-            Collection<T> currentValue = (Collection<T>) field.get(value);
+            Collection<T> currentValue = (Collection<T>) accessor.get(value);
             currentValue.add(additionalValue);
         }
 
@@ -506,7 +855,7 @@ final class ClassXmlAdapter<T> extends XmlAdapter<T> {
         @SuppressWarnings("unchecked")
             // We require that field's values are of type Collection<T>.
         void write(XmlWriter writer, Object value) throws IllegalAccessException, IOException {
-            Collection<T> fieldValue = (Collection<T>) field.get(value);
+            Collection<T> fieldValue = (Collection<T>) accessor.get(value);
             if (fieldValue != null) {
                 for (T singleValue : fieldValue) {
                     writeValue(writer, singleValue);
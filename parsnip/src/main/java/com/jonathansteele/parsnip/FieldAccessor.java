@@ -0,0 +1,222 @@
+package com.jonathansteele.parsnip;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes a field for {@link ClassXmlAdapter}. Method handles are used where the runtime
+ * allows it, with {@link Field#get} and {@link Field#set} as the fallback. A handle skips the access
+ * and type checks that {@link Field} repeats on every call, and the exact-typed ones read and write
+ * primitives without boxing. As each accessor holds its handles in instance fields they are not
+ * constants to the JIT, which calls through them rather than compiling them down to field accesses.
+ * The primitive methods may only be used for fields of that type.
+ */
+abstract class FieldAccessor {
+    static FieldAccessor of(Field field) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            return new MethodHandleFieldAccessor(field.getType(), lookup.unreflectGetter(field), lookup.unreflectSetter(field));
+        } catch (IllegalAccessException | NoClassDefFoundError e) {
+            // Final fields can't be set through a method handle before Java 12, and older Android
+            // versions have no method handles at all.
+            return reflective(field);
+        }
+    }
+
+    static FieldAccessor reflective(Field field) {
+        return new ReflectiveFieldAccessor(field);
+    }
+
+    abstract Object get(Object target) throws IllegalAccessException;
+
+    abstract void set(Object target, Object value) throws IllegalAccessException;
+
+    abstract int getInt(Object target) throws IllegalAccessException;
+
+    abstract void setInt(Object target, int value) throws IllegalAccessException;
+
+    abstract long getLong(Object target) throws IllegalAccessException;
+
+    abstract void setLong(Object target, long value) throws IllegalAccessException;
+
+    abstract double getDouble(Object target) throws IllegalAccessException;
+
+    abstract void setDouble(Object target, double value) throws IllegalAccessException;
+
+    abstract boolean getBoolean(Object target) throws IllegalAccessException;
+
+    abstract void setBoolean(Object target, boolean value) throws IllegalAccessException;
+
+    private static final class MethodHandleFieldAccessor extends FieldAccessor {
+        // Typed (Object)Object and (Object, Object)void, boxing primitives.
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        // Typed with the field's own type, for the primitive methods.
+        private final MethodHandle exactGetter;
+        private final MethodHandle exactSetter;
+
+        MethodHandleFieldAccessor(Class<?> type, MethodHandle getter, MethodHandle setter) {
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.exactGetter = getter.asType(MethodType.methodType(type, Object.class));
+            this.exactSetter = setter.asType(MethodType.methodType(void.class, Object.class, type));
+        }
+
+        @Override
+        Object get(Object target) {
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        void set(Object target, Object value) {
+            try {
+                setter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        int getInt(Object target) {
+            try {
+                return (int) exactGetter.invokeExact(target);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        void setInt(Object target, int value) {
+            try {
+                exactSetter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        long getLong(Object target) {
+            try {
+                return (long) exactGetter.invokeExact(target);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        void setLong(Object target, long value) {
+            try {
+                exactSetter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        double getDouble(Object target) {
+            try {
+                return (double) exactGetter.invokeExact(target);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        void setDouble(Object target, double value) {
+            try {
+                exactSetter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        boolean getBoolean(Object target) {
+            try {
+                return (boolean) exactGetter.invokeExact(target);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        @Override
+        void setBoolean(Object target, boolean value) {
+            try {
+                exactSetter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        private static RuntimeException rethrow(Throwable t) {
+            // Field accesses don't throw checked exceptions.
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            if (t instanceof Error) throw (Error) t;
+            throw new AssertionError(t);
+        }
+    }
+
+    private static final class ReflectiveFieldAccessor extends FieldAccessor {
+        private final Field field;
+
+        ReflectiveFieldAccessor(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        Object get(Object target) throws IllegalAccessException {
+            return field.get(target);
+        }
+
+        @Override
+        void set(Object target, Object value) throws IllegalAccessException {
+            field.set(target, value);
+        }
+
+        @Override
+        int getInt(Object target) throws IllegalAccessException {
+            return field.getInt(target);
+        }
+
+        @Override
+        void setInt(Object target, int value) throws IllegalAccessException {
+            field.setInt(target, value);
+        }
+
+        @Override
+        long getLong(Object target) throws IllegalAccessException {
+            return field.getLong(target);
+        }
+
+        @Override
+        void setLong(Object target, long value) throws IllegalAccessException {
+            field.setLong(target, value);
+        }
+
+        @Override
+        double getDouble(Object target) throws IllegalAccessException {
+            return field.getDouble(target);
+        }
+
+        @Override
+        void setDouble(Object target, double value) throws IllegalAccessException {
+            field.setDouble(target, value);
+        }
+
+        @Override
+        boolean getBoolean(Object target) throws IllegalAccessException {
+            return field.getBoolean(target);
+        }
+
+        @Override
+        void setBoolean(Object target, boolean value) throws IllegalAccessException {
+            field.setBoolean(target, value);
+        }
+    }
+}
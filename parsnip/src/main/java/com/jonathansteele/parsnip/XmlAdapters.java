@@ -22,22 +22,42 @@ import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class XmlAdapters {
     private final List<XmlAdapter.Factory> factories;
     private final List<TypeConverter.Factory> typeConverterFactories;
     private final ThreadLocal<List<DeferredAdapter<?>>> reentrantCalls = new ThreadLocal<>();
+    // Resolved adapters and converters, keyed by cacheKey(). Reads never lock.
+    private final Map<Object, XmlAdapter<?>> adapterCache = new ConcurrentHashMap<>();
+    private final Map<Object, TypeConverter<?>> converterCache = new ConcurrentHashMap<>();
 
     XmlAdapters(List<XmlAdapter.Factory> factories, List<TypeConverter.Factory> typeConverterFactories) {
         this.factories = Collections.unmodifiableList(factories);
         this.typeConverterFactories = Collections.unmodifiableList(typeConverterFactories);
     }
 
+    @SuppressWarnings("unchecked") // Cache entries are only ever stored under their own type's key.
     public <T> XmlAdapter<T> adapter(Type type, Set<? extends Annotation> annotations) {
-        return createAdapter(0, type, annotations);
+        Object cacheKey = cacheKey(type, annotations);
+        XmlAdapter<?> cached = adapterCache.get(cacheKey);
+        if (cached != null) return (XmlAdapter<T>) cached;
+
+        // Only cache adapters built by an outermost lookup. Nested lookups may still hold a
+        // DeferredAdapter that would never become ready if the outer lookup fails.
+        List<DeferredAdapter<?>> deferredAdapters = reentrantCalls.get();
+        boolean outermost = deferredAdapters == null || deferredAdapters.isEmpty();
+        XmlAdapter<T> result = createAdapter(0, type, annotations);
+        if (result != null && outermost) {
+            XmlAdapter<?> existing = adapterCache.putIfAbsent(cacheKey, result);
+            if (existing != null) return (XmlAdapter<T>) existing;
+        }
+        return result;
     }
 
     public <T> XmlAdapter<T> nextAdapter(XmlAdapter.Factory skipPast, Type type, Set<? extends Annotation> annotations) {
@@ -55,14 +75,34 @@ public class XmlAdapters {
         return new RootAdapter<>(name, adapter);
     }
 
+    @SuppressWarnings("unchecked") // Cache entries are only ever stored under their own type's key.
     public <T> TypeConverter<T> converter(Type type, Set<? extends Annotation> annotations) {
-        return createConverter(0, type, annotations);
+        Object cacheKey = cacheKey(type, annotations);
+        TypeConverter<?> cached = converterCache.get(cacheKey);
+        if (cached != null) return (TypeConverter<T>) cached;
+
+        TypeConverter<T> result = createConverter(0, type, annotations);
+        if (result != null) {
+            TypeConverter<?> existing = converterCache.putIfAbsent(cacheKey, result);
+            if (existing != null) return (TypeConverter<T>) existing;
+        }
+        return result;
     }
 
     public <T> TypeConverter<T> nextConverter(TypeConverter.Factory skipPast, Type type, Set<? extends Annotation> annotations) {
         return createConverter(typeConverterFactories.indexOf(skipPast) + 1, type, annotations);
     }
 
+    /**
+     * Returns an object that can be used as a map key for {@code type} and {@code annotations}.
+     * Unannotated lookups, by far the most common, use the canonical type itself.
+     */
+    static Object cacheKey(Type type, Set<? extends Annotation> annotations) {
+        Type canonicalType = Util.canonicalize(type);
+        if (annotations.isEmpty()) return canonicalType;
+        return Arrays.asList(canonicalType, annotations);
+    }
+
     @SuppressWarnings("unchecked") // Factories are required to return only matching XmlAdapters.
     private <T> XmlAdapter<T> createAdapter(int firstIndex, Type type, Set<? extends Annotation> annotations) {
         List<DeferredAdapter<?>> deferredAdapters = reentrantCalls.get();
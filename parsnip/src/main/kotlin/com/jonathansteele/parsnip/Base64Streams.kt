@@ -0,0 +1,179 @@
+package com.jonathansteele.parsnip
+
+import okio.Buffer
+import okio.BufferedSink
+import okio.ByteString
+import okio.Sink
+import okio.Timeout
+
+/**
+ * Decodes base64 written to it into [sink] as it arrives, so that neither the encoded text nor the
+ * decoded bytes are ever held as a whole. Bytes are read straight out of the segments of the buffers
+ * written. Both the standard and the URL-safe alphabets are accepted, and whitespace is ignored.
+ * Invalid content isn't thrown from [write] but reported by [finish], which callers that know where
+ * it came from can describe.
+ */
+internal class Base64DecodingSink(private val sink: BufferedSink) : Sink {
+    private val cursor = Buffer.UnsafeCursor()
+    // The 6-bit values of the characters of the group being decoded.
+    private var word = 0
+    private var count = 0
+    private var padding = 0
+    private var invalid = false
+
+    override fun write(source: Buffer, byteCount: Long) {
+        if (byteCount > 0L && !invalid) {
+            val out = sink.buffer
+            source.readUnsafe(cursor).use { cursor ->
+                var remaining = byteCount
+                cursor.seek(0L)
+                while (true) {
+                    val data = cursor.data!!
+                    val end = minOf(cursor.end.toLong(), cursor.start + remaining).toInt()
+                    for (i in cursor.start until end) decode(data[i].toInt(), out)
+                    remaining -= end - cursor.start
+                    if (remaining == 0L) break
+                    cursor.next()
+                }
+            }
+            sink.emitCompleteSegments()
+        }
+        source.skip(byteCount)
+    }
+
+    private fun decode(c: Int, out: Buffer) {
+        val bits = when (c) {
+            in 'A'.code..'Z'.code -> c - 'A'.code
+            in 'a'.code..'z'.code -> c - 'a'.code + 26
+            in '0'.code..'9'.code -> c - '0'.code + 52
+            '+'.code, '-'.code -> 62
+            '/'.code, '_'.code -> 63
+            '\n'.code, '\r'.code, ' '.code, '\t'.code -> return
+            '='.code -> {
+                padding++
+                return
+            }
+            else -> {
+                invalid = true
+                return
+            }
+        }
+        if (padding > 0) {
+            invalid = true // Content after the padding.
+            return
+        }
+        word = (word shl 6) or bits
+        if (++count == 4) {
+            out.writeByte(word shr 16)
+            out.writeByte(word shr 8)
+            out.writeByte(word)
+            word = 0
+            count = 0
+        }
+    }
+
+    /**
+     * Writes the bytes of a final group that was shorter than four characters and resets this for
+     * the next content. Returns false if the content so far wasn't valid base64.
+     */
+    fun finish(): Boolean {
+        val valid = !invalid && when (count) {
+            0 -> padding == 0
+            2 -> {
+                sink.buffer.writeByte(word shr 4)
+                padding == 0 || padding == 2
+            }
+            3 -> {
+                sink.buffer.writeShort(word shr 2)
+                padding == 0 || padding == 1
+            }
+            else -> false
+        }
+        sink.emitCompleteSegments()
+        word = 0
+        count = 0
+        padding = 0
+        invalid = false
+        return valid
+    }
+
+    override fun flush() = sink.flush()
+
+    override fun timeout(): Timeout = sink.timeout()
+
+    override fun close() = sink.close()
+}
+
+/**
+ * Encodes bytes as padded base64 into [sink] as they are given, carrying the bytes of an unfinished
+ * group over to the next call. Call [finish] once the last bytes have been written.
+ */
+internal class Base64Encoder(private val sink: BufferedSink) {
+    private val cursor = Buffer.UnsafeCursor()
+    private var word = 0
+    private var count = 0
+
+    fun write(value: ByteArray) {
+        for (b in value) encode(b.toInt())
+        sink.emitCompleteSegments()
+    }
+
+    fun write(value: ByteString) {
+        for (i in 0 until value.size) encode(value[i].toInt())
+        sink.emitCompleteSegments()
+    }
+
+    /** Encodes and consumes all the bytes of [source]. */
+    fun write(source: Buffer) {
+        if (source.size == 0L) return
+        source.readUnsafe(cursor).use { cursor ->
+            var length = cursor.seek(0L)
+            while (length != -1) {
+                val data = cursor.data!!
+                for (i in cursor.start until cursor.end) encode(data[i].toInt())
+                length = cursor.next()
+            }
+        }
+        source.clear()
+        sink.emitCompleteSegments()
+    }
+
+    private fun encode(b: Int) {
+        word = (word shl 8) or (b and 0xff)
+        if (++count == 3) {
+            val out = sink.buffer
+            out.writeByte(ALPHABET[word shr 18 and 0x3f].toInt())
+            out.writeByte(ALPHABET[word shr 12 and 0x3f].toInt())
+            out.writeByte(ALPHABET[word shr 6 and 0x3f].toInt())
+            out.writeByte(ALPHABET[word and 0x3f].toInt())
+            word = 0
+            count = 0
+        }
+    }
+
+    /** Writes the final group with its padding, and resets this for the next content. */
+    fun finish() {
+        val out = sink.buffer
+        when (count) {
+            1 -> {
+                out.writeByte(ALPHABET[word shr 2 and 0x3f].toInt())
+                out.writeByte(ALPHABET[word shl 4 and 0x3f].toInt())
+                out.writeByte(PAD).writeByte(PAD)
+            }
+            2 -> {
+                out.writeByte(ALPHABET[word shr 10 and 0x3f].toInt())
+                out.writeByte(ALPHABET[word shr 4 and 0x3f].toInt())
+                out.writeByte(ALPHABET[word shl 2 and 0x3f].toInt())
+                out.writeByte(PAD)
+            }
+        }
+        sink.emitCompleteSegments()
+        word = 0
+        count = 0
+    }
+
+    private companion object {
+        const val PAD = '='.code
+        val ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toByteArray()
+    }
+}
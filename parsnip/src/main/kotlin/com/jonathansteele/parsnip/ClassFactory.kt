@@ -17,6 +17,9 @@ package com.jonathansteele.parsnip
 
 import java.io.ObjectInputStream
 import java.io.ObjectStreamClass
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
 import java.lang.reflect.InvocationTargetException
 import kotlin.Throws
 
@@ -38,6 +41,8 @@ internal abstract class ClassFactory<T> {
             try {
                 val constructor = rawType.getDeclaredConstructor()
                 constructor.isAccessible = true
+                val handle = instanceHandle { it.unreflectConstructor(constructor) }
+                if (handle != null) return MethodHandleClassFactory(handle, rawType)
                 return object : ClassFactory<T>() {
                     @Suppress("UNCHECKED_CAST")
                     override fun newInstance(): T {
@@ -62,6 +67,10 @@ internal abstract class ClassFactory<T> {
                 f.isAccessible = true
                 val unsafe = f[null]
                 val allocateInstance = unsafeClass.getMethod("allocateInstance", Class::class.java)
+                val handle = instanceHandle {
+                    MethodHandles.insertArguments(it.unreflect(allocateInstance), 0, unsafe, rawType)
+                }
+                if (handle != null) return MethodHandleClassFactory(handle, rawType)
                 return object : ClassFactory<T>() {
                     @Suppress("UNCHECKED_CAST")
                     override fun newInstance(): T {
@@ -141,5 +150,42 @@ internal abstract class ClassFactory<T> {
 
             throw IllegalArgumentException("cannot construct instances of ${rawType.name}")
         }
+
+        /**
+         * Returns the handle from [unreflect] typed `()Object`, or null if method handles can't be used
+         * here, in which case the caller falls back to reflection.
+         */
+        private inline fun instanceHandle(unreflect: (MethodHandles.Lookup) -> MethodHandle): MethodHandle? {
+            return try {
+                unreflect(MethodHandles.lookup()).asType(MethodType.methodType(Any::class.java))
+            } catch (ignored: IllegalAccessException) {
+                null
+            } catch (ignored: NoClassDefFoundError) {
+                // Older Android versions have no method handles.
+                null
+            }
+        }
+    }
+
+    /** Creates instances through a method handle, which skips the checks a reflective call repeats. */
+    private class MethodHandleClassFactory<T>(
+        private val handle: MethodHandle,
+        private val rawType: Class<*>
+    ) : ClassFactory<T>() {
+        @Suppress("UNCHECKED_CAST")
+        override fun newInstance(): T {
+            return try {
+                handle.invoke() as T
+            } catch (e: Error) {
+                throw e
+            } catch (e: Throwable) {
+                // Report exceptions the same way Constructor.newInstance does.
+                throw InvocationTargetException(e)
+            }
+        }
+
+        override fun toString(): String {
+            return rawType.name
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.jonathansteele.parsnip
+
+import okio.buffer
+import okio.source
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.WeakReference
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * The generated adapters listed in the [Types.GENERATED_ADAPTER_INDEX] resources of each class
+ * loader, which is read once per loader the first time one of its classes is looked up. Loaders
+ * are held weakly, and indexes only hold names, so an index doesn't keep its loader alive. Only
+ * reading an index takes a lock; lookups in indexes that have been read don't.
+ */
+internal object GeneratedAdapterIndex {
+    private val indexes = ConcurrentHashMap<LoaderKey, Map<String, String>>()
+    private val clearedKeys = ReferenceQueue<ClassLoader>()
+
+    /** Returns the name of the adapter generated for [rawType], or null if it isn't indexed. */
+    fun adapterName(rawType: Class<*>): String? {
+        val classLoader = rawType.classLoader ?: return null
+        val index = indexes[LoaderKey(classLoader, null)] ?: synchronized(this) {
+            while (true) indexes.remove(clearedKeys.poll() ?: break)
+            indexes.getOrPut(LoaderKey(classLoader, clearedKeys)) { read(classLoader) }
+        }
+        return index[rawType.name]
+    }
+
+    private fun read(classLoader: ClassLoader): Map<String, String> {
+        val result = HashMap<String, String>()
+        for (url in classLoader.getResources(Types.GENERATED_ADAPTER_INDEX)) {
+            url.openStream().source().buffer().use { source ->
+                while (true) {
+                    val line = source.readUtf8Line() ?: break
+                    val separator = line.indexOf(' ')
+                    if (separator != -1) result[line.substring(0, separator)] = line.substring(separator + 1)
+                }
+            }
+        }
+        return result
+    }
+
+    /** A class loader compared by identity, which is removed from [indexes] once it is collected. */
+    private class LoaderKey(
+        classLoader: ClassLoader,
+        queue: ReferenceQueue<ClassLoader>?
+    ) : WeakReference<ClassLoader>(classLoader, queue) {
+        private val hashCode = System.identityHashCode(classLoader)
+
+        override fun hashCode(): Int = hashCode
+
+        override fun equals(other: Any?): Boolean {
+            if (this === other) return true
+            if (other !is LoaderKey) return false
+            val classLoader = get()
+            return classLoader != null && classLoader === other.get()
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.jonathansteele.parsnip
+
+import okio.Buffer
+import okio.Source
+import okio.Timeout
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Reads the bytes of a file from [position] to [end] by memory-mapping them [windowSize] bytes at a
+ * time, so bytes go straight from the page cache into the reader's segments without a read() call
+ * per segment. A single mapping can't exceed 2 GB, which larger files are read through one window
+ * after the other. The channel is not closed, and as mappings are made at absolute positions
+ * several sources may read the same channel at once.
+ */
+internal class MappedFileSource(
+    private val channel: FileChannel,
+    private var position: Long = channel.position(),
+    private val end: Long = channel.size(),
+    private val windowSize: Long = MAX_WINDOW_SIZE
+) : Source {
+    private var window: MappedByteBuffer? = null
+
+    override fun read(sink: Buffer, byteCount: Long): Long {
+        require(byteCount >= 0L) { "byteCount < 0: $byteCount" }
+        var window = window
+        if (window == null || !window.hasRemaining()) {
+            if (position >= end) return -1L
+            val length = minOf(windowSize, end - position)
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+            position += length
+            this.window = window
+        }
+        val count = minOf(byteCount, window.remaining().toLong()).toInt()
+        // Called through Buffer, as ByteBuffer.limit(Int) doesn't exist on Java 8.
+        val buffer: java.nio.Buffer = window
+        val limit = buffer.limit()
+        buffer.limit(buffer.position() + count)
+        sink.write(window)
+        buffer.limit(limit)
+        return count.toLong()
+    }
+
+    override fun timeout(): Timeout = Timeout.NONE
+
+    override fun close() {
+        // Mappings can't be released explicitly, dropping the reference lets them be collected.
+        window = null
+    }
+
+    companion object {
+        private const val MAX_WINDOW_SIZE = Int.MAX_VALUE.toLong()
+    }
+}
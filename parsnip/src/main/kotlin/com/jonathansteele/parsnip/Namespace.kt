@@ -15,6 +15,9 @@
  */
 package com.jonathansteele.parsnip
 
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
 /**
  * Represents an xml namespace.
  */
@@ -22,6 +25,26 @@ class Namespace(
     @JvmField var alias: String?,
     @JvmField var namespace: String?) {
 
+    // The URI that cachedId stands for, so that id follows namespace when it is reassigned.
+    private var idNamespace: String? = namespace
+    private var cachedId: Int = register(namespace)
+
+    /**
+     * A small number standing for [namespace], so that namespaces can be compared as ints. Namespaces
+     * created with the same URI share an ID, and [NO_ID] stands for no namespace or the empty URI.
+     * A URI assigned to [namespace] later, as a reader does, has [UNKNOWN_ID] unless some Namespace
+     * was created with it.
+     */
+    val id: Int
+        get() {
+            val namespace = namespace
+            if (namespace !== idNamespace) {
+                idNamespace = namespace
+                cachedId = idOf(namespace)
+            }
+            return cachedId
+        }
+
     constructor() : this("", "")
 
     override fun equals(other: Any?): Boolean {
@@ -32,4 +55,23 @@ class Namespace(
     }
 
     override fun hashCode(): Int = if (namespace != null) namespace.hashCode() else 0
-}
\ No newline at end of file
+
+    companion object {
+        const val NO_ID = 0
+        const val UNKNOWN_ID = -1
+
+        // Only URIs that Namespaces are created with are registered, so documents can't grow this.
+        private val ids = ConcurrentHashMap<String, Int>()
+        private val nextId = AtomicInteger(NO_ID + 1)
+
+        // Namespaces are created with URIs that are already registered far more often than not, and a
+        // plain get doesn't lock like computeIfAbsent does on Java 8.
+        private fun register(namespace: String?): Int =
+            if (namespace.isNullOrEmpty()) NO_ID
+            else ids[namespace] ?: ids.computeIfAbsent(namespace) { nextId.getAndIncrement() }
+
+        /** Returns the ID of [namespace], without registering it. */
+        internal fun idOf(namespace: String?): Int =
+            if (namespace.isNullOrEmpty()) NO_ID else ids[namespace] ?: UNKNOWN_ID
+    }
+}
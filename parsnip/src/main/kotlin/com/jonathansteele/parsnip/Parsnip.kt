@@ -1,8 +1,22 @@
 package com.jonathansteele.parsnip
 
 import com.jonathansteele.parsnip.annotations.SerializedName
+import com.jonathansteele.parsnip.annotations.XmlClass
 import com.jonathansteele.parsnip.annotations.XmlQualifier
+import okio.buffer
+import java.io.IOException
+import java.io.UncheckedIOException
+import java.lang.reflect.InvocationTargetException
 import java.lang.reflect.Type
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicLong
+import java.util.stream.Stream
 
 class Parsnip internal constructor(builder: Builder) {
     private val factories: List<XmlAdapter.Factory> = buildList {
@@ -16,11 +30,41 @@ class Parsnip internal constructor(builder: Builder) {
 
     private val xmlAdapters = XmlAdapters(factories, typeConverterFactories)
 
+    // Fully built root adapters, so that repeat lookups skip the annotation reflection entirely.
+    private val rootAdapterCache = ConcurrentHashMap<Any, XmlAdapter<*>>()
+    private val adapterCacheHits = AtomicLong()
+    private val adapterCacheMisses = AtomicLong()
+
+    /**
+     * Completes once the adapters for the types given to [Builder.prewarm] have been built, or
+     * exceptionally if any of them couldn't be. A failed adapter isn't cached, so its error is
+     * thrown again when it is asked for.
+     */
+    var prewarmed: CompletableFuture<Void> = CompletableFuture.completedFuture(null)
+        private set
+
+    /** The number of [adapter] calls that were served from the cache. */
+    val adapterCacheHitCount: Long
+        get() = adapterCacheHits.get()
+
+    /** The number of [adapter] calls that had to build a new root adapter. */
+    val adapterCacheMissCount: Long
+        get() = adapterCacheMisses.get()
+
     fun <T> adapter(type: Class<T>?): XmlAdapter<T> = adapter(type, NO_ANNOTATIONS)
 
     fun <T> adapter(type: Type?): XmlAdapter<T> = adapter(type, NO_ANNOTATIONS)
 
+    @Suppress("UNCHECKED_CAST") // Cache entries are only ever stored under their own type's key.
     fun <T> adapter(type: Type?, annotations: Set<Annotation?>?): XmlAdapter<T> {
+        val cacheKey = XmlAdapters.cacheKey(type, annotations)
+        val cached = rootAdapterCache[cacheKey]
+        if (cached != null) {
+            adapterCacheHits.incrementAndGet()
+            return cached as XmlAdapter<T>
+        }
+        adapterCacheMisses.incrementAndGet()
+
         val adapter: XmlAdapter<T> = xmlAdapters.adapter(type, annotations)
             ?: throw IllegalArgumentException(String.format(ERROR_FORMAT, "XmlAdapter", type, NO_ANNOTATIONS))
         val rawType = Types.getRawType(type)
@@ -28,12 +72,82 @@ class Parsnip internal constructor(builder: Builder) {
             SerializedName::class.java
         )
         val name: String = serializedName?.value ?: rawType.simpleName
-        return xmlAdapters.root(name, adapter)
+        val root = xmlAdapters.root(name, adapter)
+        return (rootAdapterCache.putIfAbsent(cacheKey, root) ?: root) as XmlAdapter<T>
+    }
+
+    /**
+     * Returns a parallel stream of the [recordTag] children of the root element of the file at
+     * [path], read with [adapter] like [XmlAdapter.streamChildren]. The file is first scanned once
+     * for the boundaries between the root's children, then split into chunks that are memory-mapped
+     * and bound on the stream's ForkJoinPool. Results come in document order unless [ordered] is
+     * false, which lets them come as soon as their chunk is read. Other children of the root are
+     * skipped. Records are read with the namespaces declared on the root element. The stream must
+     * be closed to release the file.
+     */
+    @JvmOverloads
+    fun <T> parallelStream(path: Path, recordTag: String, adapter: XmlAdapter<T>, ordered: Boolean = true): Stream<T> {
+        val channel = FileChannel.open(path, StandardOpenOption.READ)
+        try {
+            val chunkSize = (channel.size() / (ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD))
+                .coerceIn(MIN_CHUNK_SIZE, MAX_CHUNK_SIZE)
+            val source = MappedFileSource(channel, 0L).buffer()
+            val splitter = XmlRecordSplitter(source, chunkSize)
+            val chunks = source.use { splitter.split() }
+            val stream = chunks.parallelStream()
+                .flatMap { readRecords(channel, it, splitter.rootNamespaces, recordTag, adapter).stream() }
+            return (if (ordered) stream else stream.unordered()).onClose { channel.close() }
+        } catch (e: Throwable) {
+            channel.close()
+            throw e
+        }
+    }
+
+    private fun <T> readRecords(
+        channel: FileChannel,
+        chunk: XmlRecordSplitter.Chunk,
+        rootNamespaces: Map<String, String>,
+        recordTag: String,
+        adapter: XmlAdapter<T>
+    ): List<T> {
+        try {
+            val reader = XmlReader(MappedFileSource(channel, chunk.start, chunk.end).buffer())
+            // The chunk is part of the root's content, so it may hold text, and records may use the
+            // namespaces declared on the root, which is not part of the chunk.
+            reader.beginFragment()
+            reader.declareDocumentNamespaces(rootNamespaces)
+            val records = ArrayList<T>()
+            while (true) {
+                when (reader.peek()) {
+                    XmlReader.Token.END_DOCUMENT -> return records
+                    XmlReader.Token.TEXT -> reader.skip()
+                    else -> if (reader.peekTagNameEquals(recordTag)) {
+                        records += adapter.fromXml(reader)
+                    } else {
+                        reader.beginTag()
+                        reader.nextTagName()
+                        reader.skip()
+                    }
+                }
+            }
+        } catch (e: IOException) {
+            throw UncheckedIOException(e)
+        }
+    }
+
+    /** Starts building the adapters for [types] on [executor], which [prewarmed] waits for. */
+    private fun prewarm(types: List<Type>, executor: Executor) {
+        if (types.isEmpty()) return
+        prewarmed = CompletableFuture.allOf(
+            *types.map { type -> CompletableFuture.runAsync({ adapter<Any>(type) }, executor) }.toTypedArray()
+        )
     }
 
     class Builder {
         internal val adapterFactories: MutableList<XmlAdapter.Factory> = ArrayList()
         internal val typeConverterFactories: MutableList<TypeConverter.Factory> = ArrayList()
+        internal val prewarmTypes: MutableList<Type> = ArrayList()
+        internal var prewarmExecutor: Executor = ForkJoinPool.commonPool()
 
         fun <T> add(type: Type, xmlAdapter: XmlAdapter<T>): Builder = apply {
             add(newAdapterFactory(type, xmlAdapter))
@@ -69,18 +183,71 @@ class Parsnip internal constructor(builder: Builder) {
 
         fun add(adapter: Any): Builder = add(AdapterMethodsFactory[adapter])
 
-        fun build(): Parsnip = Parsnip(this)
+        /**
+         * Builds the adapters for [types] in parallel on the [prewarmExecutor] as soon as the
+         * Parsnip is built, so that the reflection they need is done before they are first used.
+         * [Parsnip.prewarmed] completes once they are all built.
+         */
+        fun prewarm(vararg types: Type): Builder = apply {
+            prewarmTypes.addAll(types)
+        }
+
+        /** Sets the executor that [prewarm] builds adapters on, [ForkJoinPool.commonPool] by default. */
+        fun prewarmExecutor(executor: Executor): Builder = apply {
+            prewarmExecutor = executor
+        }
+
+        fun build(): Parsnip {
+            val parsnip = Parsnip(this)
+            parsnip.prewarm(prewarmTypes.toList(), prewarmExecutor)
+            return parsnip
+        }
     }
 
     internal companion object {
         private const val ERROR_FORMAT = "No %s for %s annotated %s"
 
+        // Several chunks per thread even out the differences in how long chunks take to bind.
+        private const val CHUNKS_PER_THREAD = 4
+        private const val MIN_CHUNK_SIZE = 64L * 1024
+        private const val MAX_CHUNK_SIZE = 64L * 1024 * 1024
+
+        /**
+         * Finds the adapter generated by kotlin-codegen for classes annotated
+         * `@XmlClass(generateAdapter = true)`, so they are bound without reflection.
+         */
+        private val GENERATED_ADAPTER_FACTORY = XmlAdapter.Factory { type, annotations, adapters ->
+            if (annotations.isNotEmpty()) return@Factory null
+            val rawType = Types.getRawType(type)
+            val indexedName = GeneratedAdapterIndex.adapterName(rawType)
+            if (indexedName != null) return@Factory generatedAdapter(type, rawType, indexedName, adapters)
+            val xmlClass = rawType.getAnnotation(XmlClass::class.java)
+            if (xmlClass == null || !xmlClass.generateAdapter) return@Factory null
+            generatedAdapter(type, rawType, Types.generatedXmlAdapterName(rawType), adapters)
+        }
+
         @JvmField
-        val BUILT_IN_FACTORIES: List<XmlAdapter.Factory> = buildList(2) {
+        val BUILT_IN_FACTORIES: List<XmlAdapter.Factory> = buildList(3) {
             add(TagXmlAdapter.FACTORY)
+            add(GENERATED_ADAPTER_FACTORY)
             add(ClassXmlAdapter.FACTORY)
         }
 
+        private fun generatedAdapter(type: Type, rawType: Class<*>, adapterName: String, adapters: XmlAdapters): XmlAdapter<*> {
+            try {
+                val adapterClass = Class.forName(adapterName, true, rawType.classLoader)
+                val constructor = adapterClass.getDeclaredConstructor(XmlAdapters::class.java)
+                constructor.isAccessible = true
+                return constructor.newInstance(adapters) as XmlAdapter<*>
+            } catch (e: ClassNotFoundException) {
+                throw RuntimeException("Failed to find the generated XmlAdapter class for $type", e)
+            } catch (e: NoSuchMethodException) {
+                throw RuntimeException("Failed to find the generated XmlAdapter constructor for $type", e)
+            } catch (e: InvocationTargetException) {
+                throw (e.cause as? RuntimeException) ?: RuntimeException("Failed to create the generated XmlAdapter for $type", e)
+            }
+        }
+
         fun <T> newAdapterFactory(
             type: Type,
             xmlAdapter: XmlAdapter<T>
@@ -0,0 +1,63 @@
+package com.jonathansteele.parsnip
+
+/**
+ * A [TypeConverter] for `int` that can read an attribute value and write an attribute value or text
+ * directly, without creating a String or boxing. [ClassXmlAdapter] uses it for `int` fields.
+ */
+interface IntConverter : TypeConverter<Int> {
+    fun readInt(reader: XmlReader): Int
+
+    /** Writes [value] as the value of the attribute named on [writer]. */
+    fun writeInt(writer: XmlWriter, value: Int) {
+        writer.value(to(value))
+    }
+
+    /** Writes [value] as the text content of the element open on [writer]. */
+    fun writeIntText(writer: XmlWriter, value: Int) {
+        writer.text(to(value))
+    }
+}
+
+/**
+ * A [TypeConverter] for `long` that can read an attribute value and write an attribute value or text
+ * directly, without creating a String or boxing. [ClassXmlAdapter] uses it for `long` fields.
+ */
+interface LongConverter : TypeConverter<Long> {
+    fun readLong(reader: XmlReader): Long
+
+    /** Writes [value] as the value of the attribute named on [writer]. */
+    fun writeLong(writer: XmlWriter, value: Long) {
+        writer.value(to(value))
+    }
+
+    /** Writes [value] as the text content of the element open on [writer]. */
+    fun writeLongText(writer: XmlWriter, value: Long) {
+        writer.text(to(value))
+    }
+}
+
+/**
+ * A [TypeConverter] for `double` that can read an attribute value and write an attribute value or text
+ * directly, without creating a String or boxing. [ClassXmlAdapter] uses it for `double` fields.
+ */
+interface DoubleConverter : TypeConverter<Double> {
+    fun readDouble(reader: XmlReader): Double
+
+    /** Writes [value] as the value of the attribute named on [writer]. */
+    fun writeDouble(writer: XmlWriter, value: Double) {
+        writer.value(to(value))
+    }
+
+    /** Writes [value] as the text content of the element open on [writer]. */
+    fun writeDoubleText(writer: XmlWriter, value: Double) {
+        writer.text(to(value))
+    }
+}
+
+/**
+ * A [TypeConverter] for `boolean` that can read an attribute value directly, without creating a String
+ * or boxing. [ClassXmlAdapter] uses it for `boolean` fields.
+ */
+interface BooleanConverter : TypeConverter<Boolean> {
+    fun readBoolean(reader: XmlReader): Boolean
+}
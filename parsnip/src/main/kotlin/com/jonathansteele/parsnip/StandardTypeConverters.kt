@@ -15,12 +15,16 @@
  */
 package com.jonathansteele.parsnip
 
+import com.jonathansteele.parsnip.annotations.Base64
 import com.jonathansteele.parsnip.annotations.SerializedName
+import okio.ByteString
+import okio.ByteString.Companion.decodeBase64
+import okio.ByteString.Companion.toByteString
 
 @Suppress("UNCHECKED_CAST")
 internal object StandardTypeConverters {
     @JvmField
-    val FACTORY = TypeConverter.Factory { type, _ ->
+    val FACTORY = TypeConverter.Factory { type, annotations ->
        return@Factory when {
             type === Boolean::class.javaPrimitiveType -> BOOLEAN_TYPE_CONVERTER
             type === Byte::class.javaPrimitiveType -> BYTE_TYPE_CONVERTER
@@ -39,10 +43,13 @@ internal object StandardTypeConverters {
             type === Long::class.java -> LONG_TYPE_CONVERTER
             type === Short::class.java -> SHORT_TYPE_CONVERTER
             type === String::class.java -> STRING_TYPE_CONVERTER
+            type === ByteString::class.java && annotations.any { it is Base64 } -> BASE64_BYTE_STRING_TYPE_CONVERTER
             else -> {
                 val rawType = Types.getRawType(type)
                 if (rawType.isEnum) {
                     return@Factory EnumTypeConverter(rawType as Class<out Enum<*>>)
+                } else if (rawType === ByteArray::class.java) {
+                    BYTE_ARRAY_TYPE_CONVERTER
                 } else null
             }
        }
@@ -59,9 +66,11 @@ internal object StandardTypeConverters {
         return value
     }
 
-    private val BOOLEAN_TYPE_CONVERTER: TypeConverter<Boolean> = object : TypeConverter<Boolean> {
+    private val BOOLEAN_TYPE_CONVERTER: TypeConverter<Boolean> = object : BooleanConverter {
         override fun from(value: String): Boolean = value.toBoolean()
 
+        override fun readBoolean(reader: XmlReader): Boolean = reader.nextBooleanValue()
+
         override fun to(value: Boolean): String = value.toString()
     }
 
@@ -83,9 +92,19 @@ internal object StandardTypeConverters {
         override fun to(value: Char): String = value.toString()
     }
 
-    private val DOUBLE_TYPE_CONVERTER: TypeConverter<Double> = object : TypeConverter<Double> {
+    private val DOUBLE_TYPE_CONVERTER: TypeConverter<Double> = object : DoubleConverter {
         override fun from(value: String): Double = value.toDouble()
 
+        override fun readDouble(reader: XmlReader): Double = reader.nextDoubleValue()
+
+        override fun writeDouble(writer: XmlWriter, value: Double) {
+            writer.value(value)
+        }
+
+        override fun writeDoubleText(writer: XmlWriter, value: Double) {
+            writer.text(value)
+        }
+
         override fun to(value: Double): String = value.toString()
     }
 
@@ -95,15 +114,35 @@ internal object StandardTypeConverters {
         override fun to(value: Float): String = value.toString()
     }
 
-    private val INTEGER_TYPE_CONVERTER: TypeConverter<Int> = object : TypeConverter<Int> {
+    private val INTEGER_TYPE_CONVERTER: TypeConverter<Int> = object : IntConverter {
         override fun from(value: String): Int = value.toInt()
 
+        override fun readInt(reader: XmlReader): Int = reader.nextIntValue()
+
+        override fun writeInt(writer: XmlWriter, value: Int) {
+            writer.value(value.toLong())
+        }
+
+        override fun writeIntText(writer: XmlWriter, value: Int) {
+            writer.text(value.toLong())
+        }
+
         override fun to(value: Int): String = value.toString()
     }
 
-    private val LONG_TYPE_CONVERTER: TypeConverter<Long> = object : TypeConverter<Long> {
+    private val LONG_TYPE_CONVERTER: TypeConverter<Long> = object : LongConverter {
         override fun from(value: String): Long = value.toLong()
 
+        override fun readLong(reader: XmlReader): Long = reader.nextLongValue()
+
+        override fun writeLong(writer: XmlWriter, value: Long) {
+            writer.value(value)
+        }
+
+        override fun writeLongText(writer: XmlWriter, value: Long) {
+            writer.text(value)
+        }
+
         override fun to(value: Long): String = value.toString()
     }
 
@@ -120,6 +159,21 @@ internal object StandardTypeConverters {
         override fun to(value: String): String = value
     }
 
+    private fun decodeBase64(value: String): ByteString =
+        value.decodeBase64() ?: throw XmlDataException(String.format(ERROR_FORMAT, "base64", value))
+
+    private val BYTE_ARRAY_TYPE_CONVERTER: TypeConverter<ByteArray> = object : TypeConverter<ByteArray> {
+        override fun from(value: String): ByteArray = decodeBase64(value).toByteArray()
+
+        override fun to(value: ByteArray): String = value.toByteString().base64()
+    }
+
+    private val BASE64_BYTE_STRING_TYPE_CONVERTER: TypeConverter<ByteString> = object : TypeConverter<ByteString> {
+        override fun from(value: String): ByteString = decodeBase64(value)
+
+        override fun to(value: ByteString): String = value.base64()
+    }
+
     private class EnumTypeConverter<T : Enum<T>>(enumType: Class<out Enum<*>>) : TypeConverter<T> {
         private val nameConstantMap: Map<String, T>
         private val nameStrings: Array<String?>
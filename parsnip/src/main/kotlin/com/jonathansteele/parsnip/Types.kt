@@ -50,6 +50,13 @@ object Types {
     @JvmStatic
     fun generatedXmlAdapterName(className: String): String = className.replace("$", "_") + "XmlAdapter"
 
+    /**
+     * The resource in which kotlin-codegen lists the classes it generated XmlAdapters for, one
+     * `className adapterClassName` pair per line. Classes in it are bound by their generated adapter
+     * without looking at their annotations.
+     */
+    const val GENERATED_ADAPTER_INDEX = "META-INF/parsnip/xml-adapters"
+
     /**
      * Returns a new parameterized type, applying `typeArguments` to `rawType`. Use this
      * method if `rawType` is not enclosed in another type.
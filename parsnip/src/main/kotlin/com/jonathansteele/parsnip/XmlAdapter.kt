@@ -21,7 +21,11 @@ import okio.BufferedSource
 import okio.BufferedSink
 import java.lang.AssertionError
 import okio.Buffer
+import okio.buffer
 import java.lang.reflect.Type
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
 
 abstract class XmlAdapter<T> {
     @Throws(IOException::class)
@@ -29,7 +33,12 @@ abstract class XmlAdapter<T> {
 
     @Throws(IOException::class)
     fun fromXml(source: BufferedSource): T {
-        return fromXml(XmlReader(source))
+        val reader = XmlStreamPool.reader(source)
+        try {
+            return fromXml(reader)
+        } finally {
+            XmlStreamPool.recycle(reader)
+        }
     }
 
     @Throws(IOException::class)
@@ -37,12 +46,23 @@ abstract class XmlAdapter<T> {
         return fromXml(Buffer().writeUtf8(string))
     }
 
+    /** Reads the file at [path], which is memory-mapped rather than copied through a stream. */
+    @Throws(IOException::class)
+    fun fromXml(path: Path): T {
+        return FileChannel.open(path, StandardOpenOption.READ).use { fromXml(MappedFileSource(it).buffer()) }
+    }
+
     @Throws(IOException::class)
     abstract fun toXml(writer: XmlWriter, value: T)
 
     @Throws(IOException::class)
     fun toXml(sink: BufferedSink, value: T) {
-        toXml(XmlWriter(sink), value)
+        val writer = XmlStreamPool.writer(sink)
+        try {
+            toXml(writer, value)
+        } finally {
+            XmlStreamPool.recycle(writer)
+        }
     }
 
     fun toXml(value: T): String {
@@ -55,6 +75,23 @@ abstract class XmlAdapter<T> {
         return buffer.readUtf8()
     }
 
+    companion object {
+        /**
+         * Returns a sequence that lazily reads each element at [path] in [source] with [elementAdapter],
+         * such as `/catalog/products/product`. Each step is matched by name as written, including any
+         * prefix, as in `/atom:feed/atom:entry`. Elements are read one at a time as the sequence is
+         * iterated and everything outside the path is skipped, so memory use doesn't grow with the
+         * size of the document. [elementAdapter] reads the element's own tag, like the adapters
+         * returned by [Parsnip.adapter]. The sequence can only be iterated once and [source] is not
+         * closed.
+         */
+        @JvmStatic
+        fun <T> streamChildren(source: BufferedSource, path: String, elementAdapter: XmlAdapter<T>): Sequence<T> {
+            val reader = XmlReader(source)
+            return Sequence { XmlChildIterator(reader, path, elementAdapter) }.constrainOnce()
+        }
+    }
+
     fun interface Factory {
         fun create(type: Type, annotations: Set<Annotation>, adapters: XmlAdapters): XmlAdapter<*>?
     }
@@ -0,0 +1,70 @@
+package com.jonathansteele.parsnip
+
+/**
+ * Walks down to the elements at a path and reads them one at a time with [elementAdapter], skipping
+ * everything else. Only the element being read is ever held in memory.
+ */
+internal class XmlChildIterator<T>(
+    private val reader: XmlReader,
+    path: String,
+    private val elementAdapter: XmlAdapter<T>
+) : Iterator<T> {
+    private val ancestors: List<String>
+    private val elementName: String
+
+    // How many of the ancestors the reader is currently inside.
+    private var depth = 0
+    private var hasNext: Boolean? = null
+
+    init {
+        val names = path.split('/').filter { it.isNotEmpty() }
+        require(names.isNotEmpty()) { "path must name at least one element: $path" }
+        ancestors = names.subList(0, names.size - 1)
+        elementName = names.last()
+    }
+
+    override fun hasNext(): Boolean = hasNext ?: advance().also { hasNext = it }
+
+    override fun next(): T {
+        if (!hasNext()) throw NoSuchElementException()
+        hasNext = null
+        // The element adapter reads the element's own tag, like the adapters from Parsnip.adapter.
+        return elementAdapter.fromXml(reader)
+    }
+
+    /** Moves the reader to the next element to read, returning false at the end of the document. */
+    private fun advance(): Boolean {
+        while (true) {
+            when (reader.peek()) {
+                XmlReader.Token.BEGIN_TAG -> {
+                    // Every step is compared as written, prefix included, so an ancestor matches the
+                    // same way the element does.
+                    if (depth == ancestors.size && reader.peekTagNameEquals(elementName)) return true
+                    val isAncestor = depth < ancestors.size && reader.peekTagNameEquals(ancestors[depth])
+                    reader.beginTag()
+                    reader.nextTagName()
+                    if (isAncestor) {
+                        depth++
+                    } else {
+                        reader.skip()
+                    }
+                }
+                XmlReader.Token.ATTRIBUTE -> {
+                    reader.selectAttribute(NO_NAMES)
+                    reader.skipValue()
+                }
+                XmlReader.Token.TEXT -> reader.skip()
+                XmlReader.Token.END_TAG -> {
+                    reader.endTag()
+                    depth--
+                }
+                XmlReader.Token.END_DOCUMENT -> return false
+                else -> throw XmlDataException("Unexpected ${reader.peek()} at path ${reader.path}")
+            }
+        }
+    }
+
+    private companion object {
+        val NO_NAMES = XmlReader.Options.of()
+    }
+}
@@ -0,0 +1,114 @@
+package com.jonathansteele.parsnip
+
+import okio.Buffer
+import okio.ByteString.Companion.encodeUtf8
+
+/**
+ * Finds the [elementName] children of a document's root element in a buffer that is filled as the
+ * document arrives, so each one can be bound as soon as its last byte is in. Only the markup that
+ * changes the element depth is looked at, apart from the root's opening tag, whose namespace
+ * declarations each element is read with. When the buffer ends inside some markup, the scan stops
+ * at its start and resumes from there once more bytes have been added.
+ */
+class XmlElementScanner(elementName: String) {
+    private val elementName = elementName.encodeUtf8()
+
+    // Where the scan resumes, relative to the head of the buffer.
+    private var position = 0L
+    // Where the child being scanned starts relative to the head of the buffer, or -1 between children.
+    private var elementStart = -1L
+    private var depth = 0
+    private var rootNamespaces: Map<String, String> = emptyMap()
+
+    /** True once the root element has been closed. */
+    var isDone = false
+        private set
+
+    /**
+     * Removes the bytes of the next complete [elementName] child of the root from the head of
+     * [buffer] and returns a reader of them, with the namespaces declared on the root in scope, or
+     * returns null if more bytes are needed or the root is closed. Everything else before it is
+     * dropped from the buffer.
+     */
+    fun next(buffer: Buffer): XmlReader? {
+        while (!isDone) {
+            val index = buffer.indexOf(OPENING_XML_ELEMENT, position)
+            if (index == -1L || index + 1 >= buffer.size) {
+                // Text is never scanned again, only the markup after it.
+                position = if (index == -1L) buffer.size else index
+                break
+            }
+            val next = buffer[index + 1]
+            val end = when (next) {
+                SLASH -> buffer.indexAfter(CLOSING_XML_ELEMENT, index)
+                // Too short to tell a CDATA section or comment from a DOCTYPE yet.
+                BANG -> if (buffer.size - index < CDATA_OPEN.size) -1L else buffer.indexAfterMarkup(index)
+                QUESTION -> buffer.indexAfterMarkup(index)
+                else -> buffer.indexAfterOpeningTag(index)
+            }
+            if (end == -1L) {
+                position = index
+                break
+            }
+            position = end
+            when (next) {
+                SLASH -> {
+                    depth--
+                    if (depth == 0) {
+                        isDone = true
+                    } else if (depth == 1 && elementStart != -1L) {
+                        val element = take(buffer, end)
+                        if (element != null) return element
+                    }
+                }
+                BANG, QUESTION -> Unit
+                else -> {
+                    val selfClosing = buffer.isSelfClosing(end)
+                    if (depth == 0 && !selfClosing) rootNamespaces = readNamespaceDeclarations(buffer, index, end)
+                    if (depth == 1 && elementStart == -1L) elementStart = index
+                    if (!selfClosing) {
+                        depth++
+                    } else if (depth == 0) {
+                        isDone = true // A self-closing root.
+                    } else if (depth == 1) {
+                        val element = take(buffer, end)
+                        if (element != null) return element
+                    }
+                }
+            }
+            // Between children, what has been scanned is of no more use.
+            if (elementStart == -1L) {
+                buffer.skip(position)
+                position = 0L
+            }
+        }
+        if (elementStart == -1L) {
+            buffer.skip(position)
+            position = 0L
+        }
+        return null
+    }
+
+    /**
+     * Removes the child from [elementStart] up to [end] from the buffer, with all before it.
+     * Returns a reader of it if it is named [elementName], otherwise null.
+     */
+    private fun take(buffer: Buffer, end: Long): XmlReader? {
+        buffer.skip(elementStart)
+        val size = end - elementStart
+        position = 0L
+        elementStart = -1L
+        val nameEnd = elementName.size + 1L
+        if (buffer.rangeEquals(1L, elementName) && buffer[nameEnd] in NAME_TERMINALS) {
+            val reader = XmlReader(Buffer().also { it.write(buffer, size) })
+            reader.declareDocumentNamespaces(rootNamespaces)
+            return reader
+        }
+        buffer.skip(size)
+        return null
+    }
+
+    private companion object {
+        val NAME_TERMINALS = ">/ \n\t\r".encodeUtf8().toByteArray()
+    }
+}
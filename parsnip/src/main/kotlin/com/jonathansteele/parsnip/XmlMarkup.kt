@@ -0,0 +1,105 @@
+package com.jonathansteele.parsnip
+
+import okio.Buffer
+import okio.BufferedSource
+import okio.ByteString
+import okio.ByteString.Companion.encodeUtf8
+
+// Markup that XmlReader, XmlRecordSplitter and XmlElementScanner step over without reading it. The
+// functions only look for where the markup ends, so each caller consumes the bytes and reports errors
+// its own way.
+
+internal const val OPENING_XML_ELEMENT = '<'.code.toByte()
+internal const val CLOSING_XML_ELEMENT = '>'.code.toByte()
+internal const val OPENING_DOCTYPE_BRACKET = '['.code.toByte()
+internal const val SLASH = '/'.code.toByte()
+internal const val BANG = '!'.code.toByte()
+internal const val QUESTION = '?'.code.toByte()
+internal val CDATA_OPEN = "<![CDATA[".encodeUtf8()
+internal val CDATA_CLOSE = "]]>".encodeUtf8()
+internal val COMMENT_OPEN = "<!--".encodeUtf8()
+internal val COMMENT_CLOSE = "-->".encodeUtf8()
+internal val XML_DECLARATION_CLOSE = "?>".encodeUtf8()
+internal val DOCTYPE_SUBSET_CLOSE = "]>".encodeUtf8()
+private val OPENING_TAG_SKIP_TERMINALS = "\"'>".encodeUtf8()
+
+/**
+ * Returns the index just past the '>' that closes the opening tag at [fromIndex] in this source,
+ * stepping over quoted attribute values as they may contain '>', or -1 if the tag is not closed.
+ */
+internal fun BufferedSource.indexAfterOpeningTag(fromIndex: Long = 0L): Long {
+    var i = fromIndex
+    while (true) {
+        val index = indexOfElement(OPENING_TAG_SKIP_TERMINALS, i)
+        if (index == -1L) return -1L
+        val c = buffer[index]
+        if (c == CLOSING_XML_ELEMENT) return index + 1
+        val end = indexOf(c, index + 1)
+        if (end == -1L) return -1L
+        i = end + 1
+    }
+}
+
+/** Returns true if the opening tag whose end [indexAfterOpeningTag] returned is self-closing. */
+internal fun BufferedSource.isSelfClosing(tagEnd: Long): Boolean = tagEnd >= 2 && buffer[tagEnd - 2] == SLASH
+
+/**
+ * Returns the index just past the comment, CDATA section, processing instruction or declaration
+ * starting with "<!" or "<?" at [fromIndex] in this source, or -1 if it is not closed. Its first two
+ * bytes must be buffered.
+ */
+internal fun BufferedSource.indexAfterMarkup(fromIndex: Long = 0L): Long = when {
+    buffer[fromIndex + 1] == QUESTION -> indexAfter(XML_DECLARATION_CLOSE, fromIndex + 2)
+    rangeEquals(fromIndex, CDATA_OPEN) -> indexAfter(CDATA_CLOSE, fromIndex + CDATA_OPEN.size)
+    rangeEquals(fromIndex, COMMENT_OPEN) -> indexAfter(COMMENT_CLOSE, fromIndex + COMMENT_OPEN.size)
+    else -> indexAfterDoctype(fromIndex)
+}
+
+/**
+ * Returns the index just past the DOCTYPE or other declaration at [fromIndex] in this source, whose
+ * internal subset in brackets may contain '>', or -1 if it is not closed.
+ */
+private fun BufferedSource.indexAfterDoctype(fromIndex: Long): Long {
+    val end = indexOf(CLOSING_XML_ELEMENT, fromIndex)
+    if (end == -1L) return -1L
+    if (indexOf(OPENING_DOCTYPE_BRACKET, fromIndex, end) == -1L) return end + 1
+    return indexAfter(DOCTYPE_SUBSET_CLOSE, fromIndex)
+}
+
+/** Returns the index just past the first [b] at or after [fromIndex] in this source, or -1 if there is none. */
+internal fun BufferedSource.indexAfter(b: Byte, fromIndex: Long = 0L): Long {
+    val index = indexOf(b, fromIndex)
+    return if (index == -1L) -1L else index + 1
+}
+
+/** Returns the index just past the first [bytes] at or after [fromIndex], or -1 if there are none. */
+internal fun BufferedSource.indexAfter(bytes: ByteString, fromIndex: Long = 0L): Long {
+    val index = indexOf(bytes, fromIndex)
+    return if (index == -1L) -1L else index + bytes.size
+}
+
+/**
+ * Reads the namespace declarations of the opening tag from [tagStart] up to [tagEnd] in [source],
+ * keyed by alias or "" for the default namespace. The tag is copied and read with a reader of its
+ * own so that the values are decoded the same way as usual.
+ */
+internal fun readNamespaceDeclarations(source: Buffer, tagStart: Long, tagEnd: Long): Map<String, String> {
+    val tag = Buffer()
+    source.copyTo(tag, tagStart, tagEnd - 1 - tagStart)
+    tag.writeUtf8("/>") // So that the reader finds the end of the element.
+    val reader = XmlReader(tag)
+    val namespace = Namespace()
+    val namespaces = LinkedHashMap<String, String>()
+    reader.beginTag()
+    reader.nextTagName()
+    while (reader.peek() == XmlReader.Token.ATTRIBUTE) {
+        val name = reader.nextAttribute(namespace)
+        val value = reader.nextValue()
+        if (namespace.alias == "xmlns") {
+            namespaces[name] = value
+        } else if (namespace.alias == null && name == "xmlns") {
+            namespaces[""] = value
+        }
+    }
+    return namespaces
+}
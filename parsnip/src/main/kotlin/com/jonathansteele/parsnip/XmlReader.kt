@@ -1,60 +1,113 @@
 package com.jonathansteele.parsnip
 
 import okio.Buffer
+import okio.BufferedSink
 import okio.BufferedSource
 import okio.ByteString
 import okio.ByteString.Companion.encodeUtf8
+import okio.buffer
+import okio.utf8Size
 import java.io.Closeable
 import java.io.EOFException
 import java.io.IOException
-import java.util.*
+import java.nio.channels.FileChannel
+import kotlin.math.pow
 
-//TODO: Reading Namespace Support
-class XmlReader internal constructor(private val source: BufferedSource) : Closeable {
+class XmlReader internal constructor(private var source: BufferedSource) : Closeable {
     /** The input XML.  */
     private var peeked = PEEKED_NONE
     private var pathNames = arrayOfNulls<String>(32)
+    // The namespace alias of each name in pathNames, if any. They are only joined when path is built.
+    private var pathAliases = arrayOfNulls<String>(32)
     private var pathIndices = IntArray(32)
 
     // We need to store all the attributes we come across for a given tag so that we can validate
     // duplicates
-    // private var attributeNames = arrayOfNulls<String>(32)
-    // private var attributeNamespaces = arrayOfNulls<String>(32)
-    // private var attributeSize = 0
+    private var attributeNames = arrayOfNulls<String>(8)
+    private var attributeNamespaces = arrayOfNulls<String>(8)
+    private var attributeSize = 0
 
-    // Array of namespace keys (think 'foo' in 'xmlns:foo="bar"') sorted for quick binary search.
+    // Array of namespace keys (think 'foo' in 'xmlns:foo="bar"') in the order they were declared, so
+    // the innermost declaration of a key is the last one. Only a handful are ever in scope.
     private var namespaceKeys = arrayOfNulls<String>(4)
 
-    // Array of namespace values (think 'bar' in 'xmlns:foo="bar"') sorted to match indices of keys.
+    // Array of namespace values (think 'bar' in 'xmlns:foo="bar"') matching the indices of keys.
     private var namespaceValues = arrayOfNulls<String>(4)
 
     // Array of position in the stack for the namespace, used to remove them when the stack is popped.
     private var namespaceStackPositions = IntArray(4)
+    private var namespaceSize = 0
+
+    // Array of namespace IDs (see Namespace.id) matching the indices of values.
+    private var namespaceIds = IntArray(4)
 
     // Array of default namespaces (or null if there is one) for the given position in the stack.
     private var defaultNamespaces = arrayOfNulls<String>(32)
+    private var defaultNamespaceIds = IntArray(32)
 
-    // Shadowing a namespace is not likely to happen in practice, but it could, so we need to handle it.
-    // Luckily we don't have to be as fast. The first index is the depth in the stack (stackSize) and the
-    // second an index matching namespaceKeys. We want to lazily create this one because it's probably
-    // not going to be used.
-    private var shadowedNamespaces: Array<Array<String?>?>? = null
-    private var namespaceSize = 0
+    // The key of the xmlns declaration whose value is read next, or "" for the default namespace.
+    private var pendingNamespace: String? = null
 
     private var stack = IntArray(32)
     private var stackSize = 0
-    private val buffer: Buffer = source.buffer
+    private var buffer: Buffer = source.buffer
+    // Holds text while its entities are decoded. Always empty between calls, so it is reused.
+    private val decodeBuffer = Buffer()
     private var currentTagName: String? = null
 
+    // The name of the last attribute read. It's only part of the path until its value is consumed,
+    // which path works out from the peeked state and the buffer, so values don't have to clear it.
+    private var attributeName: String? = null
+
+    // True if the input is the content of an element that isn't part of it, see beginFragment.
+    private var isFragment = false
+
     // We have to eagerly parse the next attribute in order to skip xmlns declarations,
     // therefore we should save what it was.
     // private var lastAttribute: String? = null
     private val tempNamespace = Namespace()
 
+    /**
+     * The [Namespace.id] of the namespace of the last tag or attribute name read, which is
+     * [Namespace.NO_ID] if it has none. This lets adapters match names against the namespaces of
+     * their bindings without creating a [Namespace] to be filled.
+     */
+    var namespaceId: Int = Namespace.NO_ID
+        private set
+
     init {
         stack[stackSize++] = XmlScope.EMPTY_DOCUMENT
     }
 
+    /**
+     * Makes this reader read a new document from [source], keeping the arrays it has grown so far.
+     * The previous source is not closed.
+     */
+    fun reset(source: BufferedSource) {
+        this.source = source
+        buffer = source.buffer
+        peeked = PEEKED_NONE
+        pathNames.fill(null)
+        pathAliases.fill(null)
+        pathIndices.fill(0)
+        defaultNamespaces.fill(null)
+        defaultNamespaceIds.fill(Namespace.NO_ID)
+        stackSize = 0
+        stack[stackSize++] = XmlScope.EMPTY_DOCUMENT
+        namespaceKeys.fill(null)
+        namespaceValues.fill(null)
+        namespaceSize = 0
+        attributeNames.fill(null)
+        attributeNamespaces.fill(null)
+        attributeSize = 0
+        pendingNamespace = null
+        namespaceId = Namespace.NO_ID
+        currentTagName = null
+        attributeName = null
+        isFragment = false
+        decodeBuffer.clear()
+    }
+
     /**
      * Get the next token without consuming it.
      *
@@ -78,6 +131,8 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
      */
     private fun doPeek(): Int {
         val peekStack = stack[stackSize - 1]
+        // The next non-whitespace character, found once by whichever scope below falls through.
+        val next: Int
         if (peekStack == XmlScope.ELEMENT_OPENING) {
             val c = nextNonWhitespace(true)
             return if (isLiteral(c.toChar().code)) {
@@ -106,6 +161,7 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
                         buffer.skip(9) // skip opening cdata tag
                         return setPeeked(PEEKED_CDATA)
                     }
+                    next = nextChar
                 }
                 '/' -> // Self closing />
                     return if (fillBuffer(2) && buffer[1] == '>'.code.toByte()) {
@@ -152,16 +208,30 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
                 buffer.skip(9) // skip opening cdata tag
                 return setPeeked(PEEKED_CDATA)
             }
+            next = c
         } else if (peekStack == XmlScope.EMPTY_DOCUMENT) {
             stack[stackSize - 1] = XmlScope.NONEMPTY_DOCUMENT
+            next = nextNonWhitespace(true, true)
         } else if (peekStack == XmlScope.NONEMPTY_DOCUMENT) {
             val c = nextNonWhitespace(false)
             if (c == -1) {
                 return setPeeked(PEEKED_EOF)
             }
-        } else
+            if (isFragment) {
+                if (c != '<'.code) {
+                    return setPeeked(PEEKED_TEXT)
+                }
+                if (isCDATA) {
+                    buffer.skip(9) // skip opening cdata tag
+                    return setPeeked(PEEKED_CDATA)
+                }
+            }
+            next = c
+        } else {
             check(peekStack != XmlScope.CLOSED) { "XmlReader is closed" }
-        when (nextNonWhitespace(true, peekStack == XmlScope.EMPTY_DOCUMENT).toChar()) {
+            next = nextNonWhitespace(true)
+        }
+        when (next.toChar()) {
             '<' -> {
                 buffer.readByte() // consume '<'.
 
@@ -169,18 +239,23 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
                 if (fillBuffer(1) && buffer[0] == '/'.code.toByte()) {
                     buffer.readByte() // consume /
 
-                    // Check if it is the corresponding xml element name
-                    val closingElementName = readNextTagName()
-                    if (closingElementName == pathNames[stackSize - 1]) {
+                    // Check if it is the corresponding xml element name. A null name means the
+                    // opening tag was selected as unknown, so there is nothing to compare against.
+                    val expectedName = pathNames[stackSize - 1]
+                    val expectedAlias = pathAliases[stackSize - 1]
+                    val i = source.indexOfElement(TAG_START_TERMINALS)
+                    val byteCount = if (i != -1L) i else buffer.size
+                    if (expectedName == null || qualifiedNameEquals(byteCount, expectedAlias, expectedName)) {
+                        buffer.skip(byteCount)
                         if (nextNonWhitespace(false) == '>'.code) {
                             buffer.readByte() // consume >
                             return setPeeked(PEEKED_END_TAG)
                         } else {
-                            throw syntaxError("Missing closing '>' character in </" + pathNames[stackSize - 1])
+                            throw syntaxError("Missing closing '>' character in </" + qualifiedPathName(stackSize - 1))
                         }
                     } else {
-                        throw syntaxError("Expected a closing element tag </${pathNames[stackSize - 1]}>" +
-                                " but found </$closingElementName>"
+                        throw syntaxError("Expected a closing element tag </${qualifiedPathName(stackSize - 1)}>" +
+                                " but found </${buffer.readUtf8(byteCount)}>"
                         )
                     }
                 }
@@ -206,7 +281,8 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
      * @return true, if CDATA opening tag, otherwise false
      */
     private val isCDATA: Boolean
-        get() = fillBuffer(CDATA_OPEN.size.toLong()) && buffer.rangeEquals(0, CDATA_OPEN)
+        get() = fillBuffer(2) && buffer[1] == '!'.code.toByte() &&
+                fillBuffer(CDATA_OPEN.size.toLong()) && buffer.rangeEquals(0, CDATA_OPEN)
 
     /**
      * Checks for DOCTYPE beginning `<!DOCTYPE `. This method doesn't consume the opening
@@ -247,58 +323,36 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
     }
 
     /**
-     * Consumes the next token attribute of a xml element. Assumes that [beginTag] has
-     * been called before
+     * Consumes the next token attribute of a xml element and fills the given namespace. Assumes that
+     * [beginTag] has been called before. Namespace declarations are returned like any other attribute
+     * and take effect once their value has been consumed.
      *
      * @return The name of the attribute
      */
-    fun nextAttribute(): String {
+    @JvmOverloads
+    fun nextAttribute(namespace: Namespace = tempNamespace): String {
         val p = peekIfNone()
         if (p != PEEKED_ATTRIBUTE_NAME) {
             throw syntaxError("Expected xml element attribute name but was " + peek())
         }
-
-        /* var attribute: String?
-        if (lastAttribute != null) {
-            namespace.namespace = tempNamespace.namespace
-            namespace.alias = tempNamespace.alias
-            attribute = lastAttribute
-            lastAttribute = null
+        val i = source.indexOfElement(ATTRIBUTE_OR_NAMESPACE_END_TERMINAL)
+        val result = if (i != -1L && buffer[i] == ':'.code.toByte()) {
+            val alias = buffer.readUtf8(i)
+            buffer.readByte() // ':'
+            resolveNamespace(namespace, alias)
+            val name = readNextAttributeName()
+            if (alias == "xmlns") pendingNamespace = name
+            name
         } else {
-            // We must skip any xmlns attributes
-            do {
-                attribute = readNextAttribute(namespace)
-            } while (attribute == null)
-        }
-        val attributeSize = attributeSize
-        for (i in 0 until attributeSize) {
-            val name = attributeNames[i]
-            if (attribute == name) {
-                val namespaceName = attributeNamespaces[i]
-                if (namespace.namespace == null && namespaceName == null) {
-                    throw XmlDataException("Duplicate attribute '$name' at path $path")
-                } else if (namespace.namespace != null) {
-                    if (namespace.namespace == namespaceName) {
-                        throw XmlDataException("Duplicate attribute '{$namespace}$name' at path $path")
-                    }
-                }
-            }
+            resolveNamespace(namespace, null)
+            val name = readNextAttributeName()
+            if (name == "xmlns") pendingNamespace = ""
+            name
         }
-        if (attributeSize == attributeNames.size) {
-            val newAttributeNames = arrayOfNulls<String>(attributeSize * 2)
-            System.arraycopy(attributeNames, 0, newAttributeNames, 0, attributeSize)
-            attributeNames = newAttributeNames
-            val newAttributeNamespaces = arrayOfNulls<String>(attributeSize * 2)
-            System.arraycopy(attributeNamespaces, 0, newAttributeNamespaces, 0, attributeSize)
-            attributeNamespaces = newAttributeNamespaces
-        }
-        attributeNames[attributeSize] = attribute
-        attributeNamespaces[attributeSize] = namespace.namespace
-        this.attributeSize++*/
-
-        val result = readNextAttributeName()
+        // Namespace declarations are not attributes of the element, so they are not checked.
+        if (pendingNamespace == null) addAttribute(result, namespace)
         peeked = PEEKED_NONE
-        pathNames[stackSize - 1] = result
+        attributeName = result
         return result
     }
 
@@ -313,10 +367,8 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
         return if (p == PEEKED_DOUBLE_QUOTED || p == PEEKED_SINGLE_QUOTED) {
             val attributeValue =
                 nextQuotedValue(if (p == PEEKED_DOUBLE_QUOTED) DOUBLE_QUOTE else SINGLE_QUOTE)
+            pendingNamespace?.let { declareNamespace(it, attributeValue) }
             peeked = PEEKED_NONE
-            // Remove attribute name from stack, do that after nextQuotedValue() to ensure that xpath is correctly
-            // in case that nextQuotedValue() fails
-            pathNames[stackSize - 1] = null
             attributeValue
         } else {
             throw XmlDataException(
@@ -327,13 +379,17 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
 
     /**
      * Skip the value of an attribute if you don't want to read the value.
-     * [nextAttribute] must be called before invoking this method
+     * [nextAttribute] or [selectAttribute] must be called before invoking this method
      */
-    private fun skipAttributeValue() {
+    fun skipValue() {
+        if (pendingNamespace != null) {
+            // A namespace declaration still has to be read to take effect.
+            nextValue()
+            return
+        }
         val p = peekIfNone()
         if (p == PEEKED_DOUBLE_QUOTED || p == PEEKED_SINGLE_QUOTED) {
             peeked = PEEKED_NONE
-            pathNames[stackSize - 1] = null // Remove attribute name from stack
             skipQuotedValue(if (p == PEEKED_DOUBLE_QUOTED) DOUBLE_QUOTE else SINGLE_QUOTE)
         } else {
             throw XmlDataException(
@@ -343,6 +399,130 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
         }
     }
 
+    /**
+     * Consumes the next attribute's value as an int. Plain decimal values are parsed straight from
+     * the buffer without creating a String; anything else falls back to [nextValue].
+     */
+    fun nextIntValue(): Int {
+        val value = nextLongValue()
+        if (value < Int.MIN_VALUE || value > Int.MAX_VALUE) {
+            throw XmlDataException("Expected an int but was $value at path $path")
+        }
+        return value.toInt()
+    }
+
+    /**
+     * Consumes the next attribute's value as a long. Plain decimal values are parsed straight from
+     * the buffer without creating a String; anything else falls back to [nextValue].
+     */
+    fun nextLongValue(): Long {
+        val length = quotedValueLength()
+        var i = 0L
+        val negative = length > 0 && buffer[0] == '-'.code.toByte()
+        if (negative) i++
+        val digits = length - i
+        // 18 digits always fit in a long, so only longer values need the overflow checks in toLong().
+        if (digits in 1L..18L) {
+            var value = 0L
+            while (i < length) {
+                val digit = buffer[i++] - '0'.code.toByte()
+                if (digit < 0 || digit > 9) break
+                value = value * 10 + digit
+                if (i == length) {
+                    endQuotedValue(length)
+                    return if (negative) -value else value
+                }
+            }
+        }
+        val value = nextValue()
+        return value.toLongOrNull() ?: throw XmlDataException("Expected a long but was $value at path $path")
+    }
+
+    /**
+     * Consumes the next attribute's value as a double. Decimal values with up to 15 significant
+     * digits are parsed straight from the buffer, which is exact for them; anything else falls
+     * back to [nextValue].
+     */
+    fun nextDoubleValue(): Double {
+        val length = quotedValueLength()
+        var i = 0L
+        val negative = length > 0 && buffer[0] == '-'.code.toByte()
+        if (negative) i++
+        var mantissa = 0L
+        var digits = 0
+        var fractionDigits = -1
+        while (i < length) {
+            val b = buffer[i++]
+            if (b == '.'.code.toByte() && fractionDigits == -1) {
+                fractionDigits = 0
+                continue
+            }
+            val digit = b - '0'.code.toByte()
+            if (digit < 0 || digit > 9) {
+                digits = -1
+                break
+            }
+            mantissa = mantissa * 10 + digit
+            digits++
+            if (fractionDigits != -1) fractionDigits++
+        }
+        if (digits in 1..MAX_EXACT_DOUBLE_DIGITS && fractionDigits != 0) {
+            endQuotedValue(length)
+            // Both the mantissa and the power of ten are exact doubles, so the division rounds once.
+            val value = if (fractionDigits > 0) mantissa / POWERS_OF_TEN[fractionDigits] else mantissa.toDouble()
+            return if (negative) -value else value
+        }
+        val value = nextValue()
+        return value.toDoubleOrNull() ?: throw XmlDataException("Expected a double but was $value at path $path")
+    }
+
+    /**
+     * Consumes the next attribute's value as a boolean, with the same rules as [String.toBoolean]:
+     * `true` ignoring case is true, anything else is false.
+     */
+    fun nextBooleanValue(): Boolean {
+        val length = quotedValueLength()
+        if (length == TRUE.size.toLong() && buffer.rangeEquals(0, TRUE)) {
+            endQuotedValue(length)
+            return true
+        }
+        if (length == FALSE.size.toLong() && buffer.rangeEquals(0, FALSE)) {
+            endQuotedValue(length)
+            return false
+        }
+        return nextValue().toBoolean()
+    }
+
+    /**
+     * Returns the number of bytes before the closing quote of the peeked attribute value, leaving
+     * the value in the buffer.
+     */
+    private fun quotedValueLength(): Long {
+        val p = peekIfNone()
+        if (p != PEEKED_DOUBLE_QUOTED && p != PEEKED_SINGLE_QUOTED) {
+            throw XmlDataException(
+                "Expected xml element attribute value (in double quotes or single quotes) but was ${peek()}" +
+                        " at path $path")
+        }
+        val index = source.indexOf(if (p == PEEKED_DOUBLE_QUOTED) DOUBLE_QUOTE else SINGLE_QUOTE)
+        if (index == -1L) {
+            throw syntaxError("Unterminated string (" + (if (p == PEEKED_DOUBLE_QUOTED) "double quote \"" else "single quote '") + " is missing)")
+        }
+        return index
+    }
+
+    /** Consumes an attribute value of [length] bytes that was parsed in place, and its closing quote. */
+    private fun endQuotedValue(length: Long) {
+        val pendingNamespace = pendingNamespace
+        if (pendingNamespace != null) {
+            declareNamespace(pendingNamespace, buffer.readUtf8(length))
+            buffer.skip(1)
+        } else {
+            buffer.skip(length + 1)
+        }
+        peeked = PEEKED_NONE
+    }
+
     /**
      * Get the next text content of an xml element. Text content is `<element>text content</element>`
      *
@@ -363,10 +543,12 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
             val index = source.indexOf(OPENING_XML_ELEMENT)
             if (index == -1L) {
                 throw syntaxError(
-                    "Unterminated element text content. Expected </ ${pathNames[stackSize - 1]} > but haven't found"
+                    "Unterminated element text content. Expected </ ${qualifiedPathName(stackSize - 1)} > but haven't found"
                 )
             }
-            buffer.readUtf8(index)
+            // Most text has no entities, so it can be decoded as a single run.
+            val ampersand = buffer.indexOf(AMPERSAND, 0, index)
+            if (ampersand == -1L) buffer.readUtf8(index) else readDecoded(index, ampersand)
         }
         PEEKED_CDATA -> {
             peeked = PEEKED_NONE
@@ -390,6 +572,164 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
         }
     }
 
+    /**
+     * Reads [byteCount] bytes of text, replacing each entity with the character it stands for.
+     * [ampersand] is the index of the first entity. The runs between entities are moved into
+     * [decodeBuffer] segment by segment and the result is decoded to a String once.
+     */
+    private fun readDecoded(byteCount: Long, ampersand: Long): String {
+        val out = decodeBuffer
+        var remaining = byteCount
+        var next = ampersand
+        while (next != -1L) {
+            out.write(buffer, next)
+            buffer.readByte() // '&'
+            remaining -= next + 1
+            remaining -= readEntity(out, remaining)
+            next = buffer.indexOf(AMPERSAND, 0, remaining)
+        }
+        out.write(buffer, remaining)
+        return out.readUtf8()
+    }
+
+    /**
+     * Decodes the entity at the head of the buffer into [out]. The '&' must already have been
+     * consumed and the ';' must be within [limit] bytes. Returns the number of bytes consumed.
+     */
+    private fun readEntity(out: Buffer, limit: Long): Long {
+        val end = buffer.indexOf(ENTITY_END, 0, limit)
+        if (end == -1L) {
+            throw syntaxError("Unterminated entity sequence")
+        }
+        if (end > 1 && buffer[0] == '#'.code.toByte()) {
+            val hex = buffer[1] == 'x'.code.toByte()
+            var i = if (hex) 2L else 1L
+            if (i == end) throw syntaxError("Invalid character reference &${buffer.readUtf8(end)};")
+            var codePoint = 0
+            while (i < end) {
+                val c = buffer[i++].toInt()
+                val digit = when {
+                    c >= '0'.code && c <= '9'.code -> c - '0'.code
+                    hex && c >= 'a'.code && c <= 'f'.code -> c - 'a'.code + 10
+                    hex && c >= 'A'.code && c <= 'F'.code -> c - 'A'.code + 10
+                    else -> -1
+                }
+                codePoint = codePoint * (if (hex) 16 else 10) + digit
+                if (digit == -1 || codePoint > Character.MAX_CODE_POINT) {
+                    throw syntaxError("Invalid character reference &${buffer.readUtf8(end)};")
+                }
+            }
+            out.writeUtf8CodePoint(codePoint)
+        } else {
+            val c = when {
+                buffer.rangeEquals(0, ENTITY_LT) -> '<'
+                buffer.rangeEquals(0, ENTITY_GT) -> '>'
+                buffer.rangeEquals(0, ENTITY_AMP) -> '&'
+                buffer.rangeEquals(0, ENTITY_QUOT) -> '"'
+                buffer.rangeEquals(0, ENTITY_APOS) -> '\''
+                else -> throw syntaxError("Unsupported entity &${buffer.readUtf8(end)};")
+            }
+            out.writeByte(c.code)
+        }
+        buffer.skip(end + 1)
+        return end + 1
+    }
+
+    /**
+     * Writes the next text content to [sink] as UTF-8 without decoding it to a String, replacing
+     * entities as [nextText] does. Bytes are moved segment by segment as they are read, so text of
+     * any size is never held in memory as a whole. An element without content writes nothing.
+     */
+    fun nextTextTo(sink: BufferedSink) {
+        when (peekIfNone()) {
+            PEEKED_TEXT -> {
+                peeked = PEEKED_NONE
+                while (true) {
+                    val index = buffer.indexOfElement(TEXT_END_OR_ENTITY)
+                    if (index == -1L) {
+                        sink.write(buffer, buffer.size)
+                        sink.emitCompleteSegments()
+                        if (!fillBuffer(1)) {
+                            throw syntaxError(
+                                "Unterminated element text content. Expected </ ${qualifiedPathName(stackSize - 1)} >" +
+                                        " but haven't found"
+                            )
+                        }
+                        continue
+                    }
+                    sink.write(buffer, index)
+                    if (buffer[0] == OPENING_XML_ELEMENT) break
+                    buffer.readByte() // '&'
+                    fillBuffer(MAX_ENTITY_LENGTH)
+                    readEntity(sink.buffer, minOf(buffer.size, MAX_ENTITY_LENGTH))
+                    sink.emitCompleteSegments()
+                }
+            }
+            PEEKED_CDATA -> {
+                peeked = PEEKED_NONE
+                while (true) {
+                    val index = buffer.indexOf(CDATA_CLOSE)
+                    if (index != -1L) {
+                        sink.write(buffer, index)
+                        buffer.skip(3) // consume ]]>
+                        break
+                    }
+                    // Hold back the last two bytes, which may be the start of ]]>.
+                    if (buffer.size > 2) sink.write(buffer, buffer.size - 2)
+                    sink.emitCompleteSegments()
+                    if (!fillBuffer(3)) {
+                        throw EOFException("<![CDATA[ at $path has never been closed with ]]>")
+                    }
+                }
+            }
+            PEEKED_END_TAG -> {
+                // An element without text content, the end tag is left to be consumed by endTag().
+            }
+            else -> {
+                throw XmlDataException(
+                    "Expected xml element text content but was ${peek()} at path $path"
+                )
+            }
+        }
+        sink.emitCompleteSegments()
+    }
+
+    /**
+     * Returns the next text content as its UTF-8 bytes, see [nextTextTo]. This skips decoding the
+     * text to a String, for content that is kept as bytes, such as base64.
+     */
+    fun nextTextAsByteString(): ByteString {
+        nextTextTo(decodeBuffer)
+        return decodeBuffer.readByteString()
+    }
+
+    /**
+     * Decodes the next text content, which must be base64, into [sink]. The text is decoded as it
+     * is read, segment by segment, so that neither it nor the decoded bytes are held as a whole.
+     *
+     * @throws XmlDataException if the text isn't valid base64.
+     */
+    fun nextBase64To(sink: BufferedSink) {
+        val decoder = Base64DecodingSink(sink)
+        val text = decoder.buffer()
+        nextTextTo(text)
+        text.emit()
+        if (!decoder.finish()) {
+            throw XmlDataException("Expected base64 text content at path $path")
+        }
+    }
+
+    /** Returns the bytes of the next text content, which must be base64, see [nextBase64To]. */
+    fun nextBase64(): ByteString {
+        try {
+            nextBase64To(decodeBuffer)
+        } catch (e: XmlDataException) {
+            decodeBuffer.clear()
+            throw e
+        }
+        return decodeBuffer.readByteString()
+    }
+
     /**
      * Returns the index of the last character before starting the CDATA closing tag "`]]>`".
      * This method does not consume the closing CDATA tag.
@@ -415,8 +755,13 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
                 // Read text until '<' found
                 val index = source.indexOf(OPENING_XML_ELEMENT)
                 if (index == -1L) {
+                    if (isFragment && stackSize == 1) {
+                        // The text runs up to the end of the fragment.
+                        while (!source.exhausted()) buffer.clear()
+                        return
+                    }
                     throw syntaxError(
-                        "Unterminated element text content. Expected </ ${pathNames[stackSize - 1]} >" +
+                        "Unterminated element text content. Expected </ ${qualifiedPathName(stackSize - 1)} >" +
                                 " but haven't found"
                     )
                 }
@@ -447,21 +792,19 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
             System.arraycopy(stack, 0, newStack, 0, stackSize)
             System.arraycopy(pathIndices, 0, newPathIndices, 0, stackSize)
             System.arraycopy(pathNames, 0, newPathNames, 0, stackSize)
+            pathAliases = pathAliases.copyOf(stackSize * 2)
 
-            if (shadowedNamespaces != null) {
-                val newShadowedNamespaces = arrayOfNulls<Array<String?>?>(stackSize * 2)
-                System.arraycopy(shadowedNamespaces!!, 0, newShadowedNamespaces, 0, stackSize)
-                shadowedNamespaces = newShadowedNamespaces
-            }
             val newDefaultNamespaces = arrayOfNulls<String>(stackSize * 2)
             System.arraycopy(defaultNamespaces, 0, newDefaultNamespaces, 0, stackSize)
             defaultNamespaces = newDefaultNamespaces
+            defaultNamespaceIds = defaultNamespaceIds.copyOf(stackSize * 2)
 
             stack = newStack
             pathIndices = newPathIndices
             pathNames = newPathNames
         }
         defaultNamespaces[stackSize] = defaultNamespaces[stackSize - 1]
+        defaultNamespaceIds[stackSize] = defaultNamespaceIds[stackSize - 1]
         stack[stackSize++] = newTop
     }
 
@@ -472,124 +815,170 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
         stack[stackSize - 1] = 0
         stackSize--
         pathNames[stackSize] = null // Free the last path name so that it can be garbage collected!
+        pathAliases[stackSize] = null
         pathIndices[stackSize - 1]++
+        // Namespaces are declared in document order, so those going out of scope are the last ones.
+        while (namespaceSize > 0 && namespaceStackPositions[namespaceSize - 1] > stackSize) {
+            namespaceSize--
+            namespaceKeys[namespaceSize] = null
+            namespaceValues[namespaceSize] = null
+        }
         if (stackSize > 1) {
-            var namespaceSize = namespaceSize
-            var removeCount = 0
-            for (i in namespaceSize - 1 downTo 0) {
-                if (stackSize < namespaceStackPositions[i]) {
-                    namespaceSize--
-                    removeCount++
-                    val len = namespaceSize
-                    if (len > 0) {
-                        System.arraycopy(namespaceStackPositions, i, namespaceStackPositions, i - 1, len)
-                        System.arraycopy(namespaceKeys, i, namespaceKeys, i - 1, len)
-                        System.arraycopy(namespaceValues, i, namespaceValues, i - 1, len)
-                    }
-                }
-            }
-            this.namespaceSize -= removeCount
             defaultNamespaces[stackSize] = null
+            defaultNamespaceIds[stackSize] = Namespace.NO_ID
         }
-        if (shadowedNamespaces != null) {
-            val indexesForStack = shadowedNamespaces!![stackSize]
-            for (i in indexesForStack!!.indices) {
-                val value = indexesForStack[i] ?: continue
-                namespaceValues[i] = value
-            }
-            shadowedNamespaces!![stackSize] = null
+    }
+
+    /**
+     * Declares the namespace [key], or the default namespace if it is empty, for the element whose
+     * attributes are being read. The element sits one below the attribute scope on the stack. The
+     * namespace's ID is looked up here, once per declaration, rather than for every name using it.
+     * `xmlns=""` undeclares the default namespace, so its ID is [Namespace.NO_ID].
+     */
+    private fun declareNamespace(key: String, value: String) {
+        pendingNamespace = null
+        val id = Namespace.idOf(value)
+        if (key.isEmpty()) {
+            defaultNamespaces[stackSize - 2] = value
+            defaultNamespaces[stackSize - 1] = value
+            defaultNamespaceIds[stackSize - 2] = id
+            defaultNamespaceIds[stackSize - 1] = id
+            return
         }
+        addNamespace(key, value, id, stackSize - 1)
     }
 
-    private fun insertNamespace(key: String, value: String) {
-        val namespaceSize = namespaceSize
-        val searchIndex = Arrays.binarySearch(namespaceKeys, 0, namespaceSize, key)
-        val insertIndex: Int
-        if (searchIndex >= 0) {
-            insertIndex = searchIndex
-            if (shadowedNamespaces == null) {
-                shadowedNamespaces = arrayOfNulls<Array<String?>?>(stackSize)
-            }
-            var indexesForStack = shadowedNamespaces!![stackSize - 1]
-            if (indexesForStack == null) {
-                shadowedNamespaces!![stackSize - 1] = arrayOfNulls(searchIndex + 1)
-                indexesForStack = shadowedNamespaces!![stackSize - 1]
-            }
-            if (searchIndex > indexesForStack!!.size) {
-                val newIndexesForStack = arrayOfNulls<String>(searchIndex + 1)
-                System.arraycopy(indexesForStack, 0, newIndexesForStack, 0, searchIndex + 1)
-                shadowedNamespaces!![stackSize - 1] = newIndexesForStack
-                indexesForStack = shadowedNamespaces!![stackSize - 1]
+    /**
+     * Declares [namespaces], keyed by alias or "" for the default namespace, for the whole document
+     * as if they were declared by an element enclosing it. This lets a fragment cut out of a larger
+     * document be read with the namespaces of its ancestors. Must be called before anything is read.
+     */
+    internal fun declareDocumentNamespaces(namespaces: Map<String, String>) {
+        for ((key, value) in namespaces) {
+            val id = Namespace.idOf(value)
+            if (key.isEmpty()) {
+                defaultNamespaces[0] = value
+                defaultNamespaceIds[0] = id
+            } else {
+                // Position 0 is never popped, so these stay in scope until the reader is reset.
+                addNamespace(key, value, id, 0)
             }
-            indexesForStack!![searchIndex] = namespaceValues[searchIndex]
-        } else {
-            insertIndex = searchIndex.inv()
         }
+    }
+
+    /**
+     * Reads the input as the content of an element that isn't part of it, such as a run of siblings
+     * cut out of a larger document. Text and CDATA between the top-level elements are read as
+     * [Token.TEXT] and may run up to the end of the input. Must be called before anything is read.
+     */
+    internal fun beginFragment() {
+        stack[stackSize - 1] = XmlScope.NONEMPTY_DOCUMENT
+        isFragment = true
+    }
+
+    private fun addNamespace(key: String, value: String, id: Int, stackPosition: Int) {
+        val namespaceSize = namespaceSize
         if (namespaceSize == namespaceKeys.size) {
-            val newNamespaceKeys = arrayOfNulls<String>(namespaceSize * 2)
-            System.arraycopy(namespaceKeys, 0, newNamespaceKeys, 0, insertIndex)
-            newNamespaceKeys[insertIndex] = key
-            System.arraycopy(namespaceKeys, insertIndex, newNamespaceKeys, insertIndex + 1, namespaceSize - insertIndex)
-            val newNamespaceValues = arrayOfNulls<String>(namespaceSize * 2)
-            System.arraycopy(namespaceValues, 0, newNamespaceValues, 0, insertIndex)
-            newNamespaceValues[insertIndex] = value
-            System.arraycopy(
-                namespaceValues,
-                insertIndex,
-                newNamespaceValues,
-                insertIndex + 1,
-                namespaceSize - insertIndex
-            )
-            val newNamespaceStackPositions = IntArray(namespaceSize * 2)
-            System.arraycopy(namespaceStackPositions, 0, newNamespaceStackPositions, 0, insertIndex)
-            newNamespaceStackPositions[insertIndex] = stackSize
-            System.arraycopy(
-                namespaceStackPositions,
-                insertIndex,
-                newNamespaceStackPositions,
-                insertIndex + 1,
-                namespaceSize - insertIndex
-            )
-            namespaceKeys = newNamespaceKeys
-            namespaceValues = newNamespaceValues
-            namespaceStackPositions = newNamespaceStackPositions
-        } else {
-            System.arraycopy(namespaceKeys, insertIndex, namespaceKeys, insertIndex + 1, namespaceSize - insertIndex)
-            namespaceKeys[insertIndex] = key
-            System.arraycopy(
-                namespaceValues,
-                insertIndex,
-                namespaceValues,
-                insertIndex + 1,
-                namespaceSize - insertIndex
-            )
-            namespaceValues[insertIndex] = value
-            System.arraycopy(
-                namespaceStackPositions,
-                insertIndex,
-                namespaceStackPositions,
-                insertIndex + 1,
-                namespaceSize - insertIndex
-            )
-            namespaceStackPositions[insertIndex] = stackSize
+            namespaceKeys = namespaceKeys.copyOf(namespaceSize * 2)
+            namespaceValues = namespaceValues.copyOf(namespaceSize * 2)
+            namespaceIds = namespaceIds.copyOf(namespaceSize * 2)
+            namespaceStackPositions = namespaceStackPositions.copyOf(namespaceSize * 2)
         }
+        namespaceKeys[namespaceSize] = key
+        namespaceValues[namespaceSize] = value
+        namespaceIds[namespaceSize] = id
+        namespaceStackPositions[namespaceSize] = stackPosition
         this.namespaceSize++
     }
 
-    private fun namespaceValue(key: String): String? {
-        val index = Arrays.binarySearch(namespaceKeys, 0, namespaceSize, key)
-        return if (index >= 0) {
-            namespaceValues[index]
-        } else {
-            null
+    /**
+     * Fills [namespace] with the namespace bound to [alias] in scope, or with the default namespace
+     * if [alias] is null, and sets [namespaceId] to its ID. An alias that was never declared has no
+     * namespace. A declaration whose URI was unknown is looked up again, as a Namespace created after
+     * it was read may have registered the URI since.
+     */
+    private fun resolveNamespace(namespace: Namespace, alias: String?) {
+        namespace.alias = alias
+        if (alias == null) {
+            val id = defaultNamespaceIds[stackSize - 1]
+            namespace.namespace = defaultNamespaces[stackSize - 1]
+            namespaceId = if (id == Namespace.UNKNOWN_ID) Namespace.idOf(namespace.namespace) else id
+            return
+        }
+        for (i in namespaceSize - 1 downTo 0) {
+            if (alias == namespaceKeys[i]) {
+                val id = namespaceIds[i]
+                namespace.namespace = namespaceValues[i]
+                namespaceId = if (id == Namespace.UNKNOWN_ID) Namespace.idOf(namespace.namespace) else id
+                return
+            }
         }
+        namespace.namespace = null
+        namespaceId = Namespace.NO_ID
+    }
+
+    /**
+     * Records the attribute that was just read, throwing if the element already had one with the
+     * same name and namespace.
+     */
+    private fun addAttribute(name: String, namespace: Namespace) {
+        val namespaceName = namespace.namespace
+        val attributeSize = attributeSize
+        for (i in 0 until attributeSize) {
+            if (name == attributeNames[i] && namespaceName == attributeNamespaces[i]) {
+                throw XmlDataException(
+                    if (namespaceName == null) "Duplicate attribute '$name' at path $path"
+                    else "Duplicate attribute '{$namespaceName}$name' at path $path"
+                )
+            }
+        }
+        if (attributeSize == attributeNames.size) {
+            attributeNames = attributeNames.copyOf(attributeSize * 2)
+            attributeNamespaces = attributeNamespaces.copyOf(attributeSize * 2)
+        }
+        attributeNames[attributeSize] = name
+        attributeNamespaces[attributeSize] = namespaceName
+        this.attributeSize++
     }
 
     /**
      * Returns a XPath to the current location in the XML value.
      */
     val path: String
-        get() = XmlScope.getPath(stackSize, stack, pathNames, pathIndices)
+        get() {
+            val names = arrayOfNulls<String>(stackSize)
+            for (i in 0 until stackSize) {
+                names[i] = qualifiedPathName(i)
+            }
+            if (isAttributeValuePending) names[stackSize - 1] = attributeName
+            return XmlScope.getPath(stackSize, stack, names, pathIndices)
+        }
+
+    /**
+     * True if an attribute's name has been read but not its value. The value's quote has been
+     * peeked, or the next byte that isn't whitespace is the '=' that the name stopped at. Bytes that
+     * aren't buffered yet aren't requested, as this is only used to describe where the reader is.
+     */
+    private val isAttributeValuePending: Boolean
+        get() {
+            if (stack[stackSize - 1] != XmlScope.ELEMENT_ATTRIBUTE) return false
+            val p = peeked
+            if (p == PEEKED_DOUBLE_QUOTED || p == PEEKED_SINGLE_QUOTED) return true
+            if (p != PEEKED_NONE) return false
+            for (i in 0 until buffer.size) {
+                when (buffer[i].toInt().toChar()) {
+                    ' ', '\n', '\t', '\r' -> continue
+                    else -> return buffer[i] == '='.code.toByte()
+                }
+            }
+            return false
+        }
+
+    private fun qualifiedPathName(i: Int): String? {
+        val name = pathNames[i]
+        val alias = pathAliases[i]
+        return if (name == null || alias == null) name else "$alias:$name"
+    }
 
     override fun close() {
         peeked = PEEKED_NONE
@@ -629,10 +1018,13 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
                 continue
             }
             buffer.skip((p - 1).toLong())
-            if (c == '<'.code && !isCDATA && fillBuffer(2)) {
+            if (c == '<'.code && fillBuffer(2)) {
+                // Only "<!" and "<?" can start markup to skip, so plain tags never reach the CDATA check.
                 val peek = buffer[1]
                 val peekStack = stack[stackSize - 1]
-                if (peekStack == XmlScope.NONEMPTY_DOCUMENT && isDocTypeDefinition) {
+                if (peek == '!'.code.toByte() && isCDATA) {
+                    return c
+                } else if (peekStack == XmlScope.NONEMPTY_DOCUMENT && isDocTypeDefinition) {
                     var index = source.indexOf(CLOSING_XML_ELEMENT, DOCTYPE_OPEN.size.toLong())
                     if (index == -1L) {
                         throw syntaxError("Unterminated <!DOCTYPE>. Inline DOCTYPE is not support at the moment.")
@@ -702,9 +1094,11 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
         val tag = nextTag(namespace)
         currentTagName = tag
         peeked = PEEKED_NONE
-        pathNames[stackSize - 1] = if (namespace.alias == null) tag else namespace.alias + ":" + tag
+        pathNames[stackSize - 1] = tag
+        pathAliases[stackSize - 1] = namespace.alias
 
         // Next we expect element attributes block
+        attributeSize = 0
         pushStack(XmlScope.ELEMENT_ATTRIBUTE)
         return currentTagName
     }
@@ -721,12 +1115,10 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
         val n = buffer[0].toInt()
         return if (n == ':'.code) {
             buffer.readByte() // ':'
-            namespace.alias = tagOrNs
-            namespace.namespace = namespaceValue(tagOrNs)
+            resolveNamespace(namespace, tagOrNs)
             readNextTagName()
         } else {
-            namespace.alias = null
-            namespace.namespace = defaultNamespaces[stackSize - 1]
+            resolveNamespace(namespace, null)
             tagOrNs
         }
     }
@@ -737,46 +1129,143 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
     }
 
     /**
-     * Reads the next attribute, and it's namespace if not null. Since declaring namespaces are
-     * attributes themselves, this method may return null if it is parsing a xmlns declaration. In
-     * that case, the attribute should be skipped and not given to the client.
+     * Returns true if the peeked token is an opening tag named [name], without consuming it. The name
+     * is compared as written, including any namespace prefix.
      */
-    private fun readNextAttribute(namespace: Namespace?): String? {
-        val i = source.indexOfElement(ATTRIBUTE_OR_NAMESPACE_END_TERMINAL)
-        val attrOrNs = if (i != -1L) buffer.readUtf8(i) else buffer.readUtf8()
-        fillBuffer(1)
-        val n = buffer[0].toInt()
-        return if (n == ':'.code) {
+    internal fun peekTagNameEquals(name: String): Boolean {
+        if (peekIfNone() != PEEKED_BEGIN_TAG) return false
+        // The '<' has been consumed, so the name starts the buffer.
+        val i = source.indexOfElement(TAG_START_TERMINALS)
+        val byteCount = if (i != -1L) i else buffer.size
+        return nameEquals(byteCount, name)
+    }
+
+    /**
+     * Consumes the opening xml name like [nextTagName], but instead of decoding it returns its index
+     * in [options], or -1 if it is not one of them. Names are compared as UTF-8 bytes, so neither a
+     * known nor an unknown name allocates a String. An unknown element is expected to be skipped.
+     */
+    @JvmOverloads
+    fun selectTag(options: Options, namespace: Namespace = tempNamespace): Int {
+        val p = peekIfNone()
+        if (p != PEEKED_ELEMENT_NAME) {
+            throw syntaxError("Expected XML Tag Element name, but have " + peek())
+        }
+        // There may be space between the opening and the tag.
+        nextNonWhitespace(true)
+        val i = source.indexOfElement(TAG_OR_NAMESPACE_END_TERMINAL)
+        if (i != -1L && buffer[i] == ':'.code.toByte()) {
+            val alias = buffer.readUtf8(i)
             buffer.readByte() // ':'
-            if ("xmlns" == attrOrNs) {
-                val name = readNextAttributeName()
-                pushStack(XmlScope.ELEMENT_ATTRIBUTE)
-                peeked = PEEKED_NONE
-                val value = nextValue()
-                insertNamespace(name, value)
-                null
+            resolveNamespace(namespace, alias)
+        } else {
+            resolveNamespace(namespace, null)
+        }
+        val index = selectName(options, TAG_START_TERMINALS)
+        val tag = if (index != -1) options.strings[index] else null
+        currentTagName = tag
+        peeked = PEEKED_NONE
+        pathNames[stackSize - 1] = tag
+        pathAliases[stackSize - 1] = namespace.alias
+
+        // Next we expect element attributes block
+        attributeSize = 0
+        pushStack(XmlScope.ELEMENT_ATTRIBUTE)
+        return index
+    }
+
+    /**
+     * Consumes the next attribute name like [nextAttribute], but instead of decoding it returns its
+     * index in [options], or -1 if it is not one of them. Either way the value must be consumed with
+     * [nextValue] or [skipValue] afterwards. Namespace declarations never match, but still take
+     * effect once their value is consumed.
+     */
+    @JvmOverloads
+    fun selectAttribute(options: Options, namespace: Namespace = tempNamespace): Int {
+        val p = peekIfNone()
+        if (p != PEEKED_ATTRIBUTE_NAME) {
+            throw syntaxError("Expected xml element attribute name but was " + peek())
+        }
+        peeked = PEEKED_NONE
+        val i = source.indexOfElement(ATTRIBUTE_OR_NAMESPACE_END_TERMINAL)
+        val index = if (i != -1L && buffer[i] == ':'.code.toByte()) {
+            if (i == XMLNS.size.toLong() && buffer.rangeEquals(0, XMLNS)) {
+                buffer.skip(i + 1) // 'xmlns:'
+                pendingNamespace = readNextAttributeName()
+                -1
             } else {
-                if (namespace != null) {
-                    namespace.alias = attrOrNs
-                    namespace.namespace = namespaceValue(attrOrNs)
-                }
-                readNextAttributeName()
+                val alias = buffer.readUtf8(i)
+                buffer.readByte() // ':'
+                resolveNamespace(namespace, alias)
+                selectName(options, ATTRIBUTE_END_TERMINAL)
             }
+        } else if (i == XMLNS.size.toLong() && buffer.rangeEquals(0, XMLNS)) {
+            buffer.skip(i) // 'xmlns'
+            pendingNamespace = ""
+            -1
         } else {
-            if ("xmlns" == attrOrNs) {
-                pushStack(XmlScope.ELEMENT_ATTRIBUTE)
-                peeked = PEEKED_NONE
-                val value = nextValue()
-                defaultNamespaces[stackSize - 1] = value
-                null
-            } else {
-                if (namespace != null) {
-                    namespace.alias = null
-                    namespace.namespace = defaultNamespaces[stackSize - 1]
+            resolveNamespace(namespace, null)
+            selectName(options, ATTRIBUTE_END_TERMINAL)
+        }
+        val name = if (index != -1) options.strings[index] else null
+        // Unknown attributes are skipped without decoding their names, so only known ones are checked.
+        if (name != null) addAttribute(name, namespace)
+        attributeName = name
+        return index
+    }
+
+    /**
+     * Consumes the name at the head of the buffer and returns its index in [options], or -1 if it
+     * isn't one of them. [terminals] are the bytes that may follow a complete name.
+     */
+    private fun selectName(options: Options, terminals: ByteString): Int {
+        val selected = source.select(options.utf8Options)
+        // Options are ordered longest first, so this is the longest known prefix of the name. It is
+        // only the name itself if nothing but a terminal follows.
+        if (selected != -1 && (!fillBuffer(1) || isTerminal(buffer[0], terminals))) {
+            return options.indices[selected]
+        }
+        skipName(terminals)
+        return -1
+    }
+
+    private fun skipName(terminals: ByteString) {
+        val i = source.indexOfElement(terminals)
+        buffer.skip(if (i != -1L) i else buffer.size)
+    }
+
+    private fun isTerminal(b: Byte, terminals: ByteString): Boolean {
+        for (j in 0 until terminals.size) {
+            if (terminals[j] == b) return true
+        }
+        return false
+    }
+
+    /**
+     * Returns true if the [byteCount] bytes of the buffer at [offset] are the UTF-8 encoding of
+     * [name]. Names are nearly always ASCII, which compares without encoding [name].
+     */
+    private fun nameEquals(byteCount: Long, name: String, offset: Long = 0L): Boolean {
+        if (byteCount == name.length.toLong()) {
+            var ascii = true
+            for (j in name.indices) {
+                val b = buffer[offset + j].toInt()
+                if (b < 0) {
+                    ascii = false
+                    break
                 }
-                attrOrNs
+                if (b != name[j].code) return false
             }
+            if (ascii) return true
         }
+        return name.utf8Size() == byteCount && buffer.rangeEquals(offset, name.encodeUtf8())
+    }
+
+    /** Returns true if the first [byteCount] bytes of the buffer are [name] prefixed by [alias], if any. */
+    private fun qualifiedNameEquals(byteCount: Long, alias: String?, name: String): Boolean {
+        if (alias == null) return nameEquals(byteCount, name)
+        val i = buffer.indexOf(':'.code.toByte(), 0, byteCount)
+        return i != -1L && nameEquals(i, alias) && nameEquals(byteCount - i - 1, name, i + 1)
     }
 
     private fun readNextAttributeName(): String {
@@ -785,42 +1274,23 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
     }
 
     /**
-     * Returns the string up to but not including `quote`, non-escaping any character escape
-     * sequences encountered along the way. The opening quote should have already been read. This
-     * consumes the closing quote, but does not include it in the returned string.
+     * Returns the string up to but not including `quote`, decoding any entities encountered along the
+     * way. The opening quote should have already been read. This consumes the closing quote, but does
+     * not include it in the returned string.
      *
-     * @throws IOException if any unicode escape sequences are malformed.
+     * @throws IOException if any entities are malformed.
      */
     private fun nextQuotedValue(runTerminator: Byte): String {
-        var builder: StringBuilder? = null
-        while (true) {
-            val index = source.indexOf(runTerminator)
-            if (index == -1L) {
-                throw syntaxError(
-                    "Unterminated string (" + (if (runTerminator == DOUBLE_QUOTE) "double quote \"" else "single quote '") + " is missing)"
-                )
-            }
-
-            // If we've got an escape character, we're going to need a string builder.
-            if (buffer[index] == '\\'.code.toByte()) {
-                if (builder == null) builder = StringBuilder()
-                builder.append(buffer.readUtf8(index))
-                buffer.readByte() // '\'
-                builder.append(readEscapeCharacter())
-                continue
-            }
-
-            // If it isn't the escape character, it's the quote. Return the string.
-            return if (builder == null) {
-                val result = buffer.readUtf8(index)
-                buffer.readByte() // Consume the quote character.
-                result
-            } else {
-                builder.append(buffer.readUtf8(index))
-                buffer.readByte() // Consume the quote character.
-                builder.toString()
-            }
+        val index = source.indexOf(runTerminator)
+        if (index == -1L) {
+            throw syntaxError(
+                "Unterminated string (" + (if (runTerminator == DOUBLE_QUOTE) "double quote \"" else "single quote '") + " is missing)"
+            )
         }
+        val ampersand = buffer.indexOf(AMPERSAND, 0, index)
+        val result = if (ampersand == -1L) buffer.readUtf8(index) else readDecoded(index, ampersand)
+        buffer.readByte() // Consume the quote character.
+        return result
     }
 
     /**
@@ -835,63 +1305,16 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
             else -> true
     }
 
-    /**
-     * Unescapes the character identified by the character or characters that immediately follow a
-     * backslash. The backslash '\' should have already been read. This supports both unicode escapes
-     * "u000A" and two-character escapes "\n".
-     *
-     * @throws IOException if any unicode escape sequences are malformed.
-     */
-    private fun readEscapeCharacter(): Char {
-        if (!fillBuffer(1)) {
-            throw syntaxError("Unterminated escape sequence")
-        }
-        return when (val escaped = buffer.readByte().toInt().toChar()) {
-            'u' -> {
-                if (!fillBuffer(4)) {
-                    throw EOFException("Unterminated escape sequence at path $path")
-                }
-                // Equivalent to Integer.parseInt(stringPool.get(buffer, pos, 4), 16);
-                var result = 0.toChar()
-                for (i in 0 until 4) {
-                    result = (result.code shl 4).toChar()
-                    result += when (val c = buffer[i.toLong()].toInt().toChar()) {
-                        in '0'..'9' -> c - '0'
-                        in 'a'..'f' -> c - 'a' + 10
-                        in 'A'..'F' -> c - 'A' + 10
-                        else -> throw syntaxError("\\u" + buffer.readUtf8(4))
-                    }
-                }
-                buffer.skip(4)
-                result
-            }
-            't' -> '\t'
-            'b' -> '\b'
-            'n' -> '\n'
-            'r' -> '\r'
-            'f' -> '\u000C' /*\f*/
-            '\n', '\'', '"', '\\' -> escaped
-            else -> escaped
-        }
-    }
-
     /**
      * Skip a quoted value
      *
      * @param runTerminator The terminator to skip
      */
     private fun skipQuotedValue(runTerminator: Byte) {
-        while (true) {
-            val index = source.indexOf(runTerminator)
-            if (index == -1L) throw syntaxError("Unterminated string")
-            if (buffer[index] == '\\'.code.toByte()) {
-                buffer.skip(index + 1)
-                readEscapeCharacter()
-            } else {
-                buffer.skip(index + 1)
-                return
-            }
-        }
+        // Entities never contain quotes, so the value ends at the first one.
+        val index = source.indexOf(runTerminator)
+        if (index == -1L) throw syntaxError("Unterminated string")
+        buffer.skip(index + 1)
     }
 
     /**
@@ -899,34 +1322,82 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
      * This method is typically invoked once [beginTag] ang [nextTagName] has been consumed,
      * but we don't want to consume the xml element with the given name.
      * So with this method we can skip the whole remaining xml element (attribute, text content and child elements)
-     * by using this method.
+     * by using this method. If the next token is text instead, just the text is skipped.
+     *
+     * The skipped content is scanned as raw bytes for the markup that changes the element depth, so
+     * no names or values are decoded and the path is not updated along the way.
      */
     fun skip() {
+        pendingNamespace = null
+        val p = peeked
+        if (p == PEEKED_TEXT || p == PEEKED_CDATA) {
+            skipText()
+            return
+        }
         val stackPeek = stack[stackSize - 1]
         if (stackPeek != XmlScope.ELEMENT_OPENING && stackPeek != XmlScope.ELEMENT_ATTRIBUTE) {
             throw AssertionError(
                 "This method can only be invoked after having consumed the opening element via beginTag()"
             )
         }
-        var count = 1
-        do {
-            when (peek()) {
-                Token.BEGIN_TAG -> {
-                    beginTag()
-                    count++
+        peeked = PEEKED_NONE
+        when (p) {
+            // The element was self-closing and has already been read completely.
+            PEEKED_END_TAG -> {
+                popStack()
+                return
+            }
+            PEEKED_DOUBLE_QUOTED -> skipQuotedValue(DOUBLE_QUOTE)
+            PEEKED_SINGLE_QUOTED -> skipQuotedValue(SINGLE_QUOTE)
+        }
+        if (!skipOpeningTag()) {
+            skipElementContent()
+        }
+        if (stack[stackSize - 1] == XmlScope.ELEMENT_ATTRIBUTE) {
+            popStack()
+        }
+        popStack()
+    }
+
+    /**
+     * Skips the rest of the opening tag the reader is in, stepping over quoted attribute values as
+     * they may contain '>'. Returns true if the tag was self-closing.
+     */
+    private fun skipOpeningTag(): Boolean {
+        val end = source.indexAfterOpeningTag()
+        val selfClosing = end != -1L && source.isSelfClosing(end)
+        skipTo(end)
+        return selfClosing
+    }
+
+    /**
+     * Skips an element's content up to and including its closing tag, counting the depth of nested
+     * elements. Text is skipped in bulk and CDATA, comments and processing instructions as a whole.
+     */
+    private fun skipElementContent() {
+        var depth = 1
+        while (true) {
+            val index = source.indexOf(OPENING_XML_ELEMENT)
+            if (index == -1L || !fillBuffer(index + 2)) throw syntaxError(UNCLOSED_ELEMENT)
+            buffer.skip(index) // text
+            when (buffer[1]) {
+                SLASH -> {
+                    skipTo(source.indexAfter(CLOSING_XML_ELEMENT))
+                    if (--depth == 0) return
                 }
-                Token.END_TAG -> {
-                    endTag()
-                    count--
+                BANG, QUESTION -> skipTo(source.indexAfterMarkup())
+                else -> {
+                    buffer.readByte() // consume <
+                    if (!skipOpeningTag()) depth++
                 }
-                Token.ELEMENT_NAME -> nextTagName() // TODO add a skip element name method
-                Token.ATTRIBUTE -> nextAttribute() // TODO add a skip attribute name method
-                Token.VALUE -> skipAttributeValue()
-                Token.TEXT -> skipText()
-                Token.END_DOCUMENT -> throw syntaxError("Unexpected end of file! At least one xml element is not closed!")
             }
-            peeked = PEEKED_NONE
-        } while (count != 0)
+        }
+    }
+
+    /** Skips the bytes before [end], which is -1 if the markup being skipped is not closed. */
+    private fun skipTo(end: Long) {
+        if (end == -1L) throw syntaxError(UNCLOSED_ELEMENT)
+        buffer.skip(end)
     }
 
     private fun peekIfNone(): Int {
@@ -939,6 +1410,26 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
         return peekedType
     }
 
+    /**
+     * A set of tag or attribute names to match with [selectTag] and [selectAttribute]. The names are
+     * encoded to UTF-8 once, up front, so that matching them is a byte comparison.
+     */
+    class Options private constructor(
+        internal val strings: Array<String>,
+        internal val utf8Options: okio.Options,
+        internal val indices: IntArray
+    ) {
+        companion object {
+            @JvmStatic
+            fun of(vararg strings: String): Options {
+                // Longest names first, so that selecting never stops at a name that is only a prefix.
+                val order = strings.indices.sortedByDescending { strings[it].utf8Size() }
+                val utf8Options = okio.Options.of(*Array(order.size) { strings[order[it]].encodeUtf8() })
+                return Options(arrayOf(*strings), utf8Options, order.toIntArray())
+            }
+        }
+    }
+
     enum class Token {
         /**
          * Indicates that an xml element begins.
@@ -978,21 +1469,41 @@ class XmlReader internal constructor(private val source: BufferedSource) : Close
     }
 
     companion object {
+        /**
+         * Returns a reader over the file behind [channel], from its current position, which is
+         * memory-mapped rather than read. Closing the reader doesn't close [channel].
+         */
+        @JvmStatic
+        fun of(channel: FileChannel): XmlReader = XmlReader(MappedFileSource(channel).buffer())
+
+        /** Returns a reader over [source], for reading a document token by token without an adapter. */
+        @JvmStatic
+        fun of(source: BufferedSource): XmlReader = XmlReader(source)
+
         private val TAG_START_TERMINALS = ">/ \n\t\r\u000c".encodeUtf8()
         private val ATTRIBUTE_END_TERMINAL = "= ".encodeUtf8()
         private val ATTRIBUTE_OR_NAMESPACE_END_TERMINAL = ":= ".encodeUtf8()
         private val TAG_OR_NAMESPACE_END_TERMINAL = ":>/ \n\t\r\u000c".encodeUtf8()
-        private val CDATA_CLOSE = "]]>".encodeUtf8()
-        private val CDATA_OPEN = "<![CDATA[".encodeUtf8()
         private val DOCTYPE_OPEN = "<!DOCTYPE".encodeUtf8()
-        private val COMMENT_CLOSE = "-->".encodeUtf8()
-        private val XML_DECLARATION_CLOSE = "?>".encodeUtf8()
+        private val XMLNS = "xmlns".encodeUtf8()
+        private const val UNCLOSED_ELEMENT = "Unexpected end of file! At least one xml element is not closed!"
         private val UTF8_BOM = ByteString.of(0xEF.toByte(), 0xBB.toByte(), 0xBF.toByte())
+        private val TEXT_END_OR_ENTITY = "<&".encodeUtf8()
+        // Longer than any entity that can be decoded, such as "#x10FFFF;", with room for leading zeros.
+        private const val MAX_ENTITY_LENGTH = 32L
+        private val ENTITY_LT = "lt;".encodeUtf8()
+        private val ENTITY_GT = "gt;".encodeUtf8()
+        private val ENTITY_AMP = "amp;".encodeUtf8()
+        private val ENTITY_QUOT = "quot;".encodeUtf8()
+        private val ENTITY_APOS = "apos;".encodeUtf8()
+        private const val AMPERSAND = '&'.code.toByte()
+        private const val ENTITY_END = ';'.code.toByte()
+        private val TRUE = "true".encodeUtf8()
+        private val FALSE = "false".encodeUtf8()
+        private const val MAX_EXACT_DOUBLE_DIGITS = 15
+        private val POWERS_OF_TEN = DoubleArray(MAX_EXACT_DOUBLE_DIGITS + 1) { 10.0.pow(it) }
         private const val DOUBLE_QUOTE = '"'.code.toByte()
         private const val SINGLE_QUOTE = '\''.code.toByte()
-        private const val OPENING_XML_ELEMENT = '<'.code.toByte()
-        private const val CLOSING_XML_ELEMENT = '>'.code.toByte()
-        private const val OPENING_DOCTYPE_BRACKET = '['.code.toByte()
         private const val CLOSING_DOCTYPE_BRACKET = ']'.code.toByte()
 
         //
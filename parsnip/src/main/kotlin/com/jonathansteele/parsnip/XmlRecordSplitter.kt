@@ -0,0 +1,101 @@
+package com.jonathansteele.parsnip
+
+import okio.BufferedSource
+import java.io.EOFException
+
+/**
+ * Finds where the children of a document's root element start and groups them into ranges of at
+ * least [chunkSize] bytes, each of which can be read on its own as a sequence of top-level elements.
+ * Only the markup that changes the element depth is looked at, stepping over comments, CDATA,
+ * processing instructions and quoted attribute values, so no names or values are decoded. The one
+ * exception is the root's opening tag, whose namespace declarations the chunks are read with.
+ */
+internal class XmlRecordSplitter(private val source: BufferedSource, private val chunkSize: Long) {
+    // The number of bytes consumed so far, which is the position in the file of the buffer's head.
+    private var offset = 0L
+
+    /** The namespaces declared on the root element by alias, or "" for the default namespace. */
+    var rootNamespaces: Map<String, String> = emptyMap()
+        private set
+
+    /** The bytes of a file from [start] up to but not including [end]. */
+    class Chunk(val start: Long, val end: Long)
+
+    fun split(): List<Chunk> {
+        val chunks = ArrayList<Chunk>()
+        if (!skipToRootContent()) return chunks
+        var chunkStart = -1L
+        var depth = 1
+        while (true) {
+            val index = source.indexOf(OPENING_XML_ELEMENT)
+            if (index == -1L || !source.request(index + 2)) throw EOFException(UNCLOSED_ROOT)
+            skip(index) // text
+            when (source.buffer[1]) {
+                SLASH -> {
+                    val end = offset
+                    skipTo(source.indexAfter(CLOSING_XML_ELEMENT))
+                    if (--depth == 0) {
+                        if (chunkStart != -1L) chunks += Chunk(chunkStart, end)
+                        return chunks
+                    }
+                }
+                BANG, QUESTION -> skipTo(source.indexAfterMarkup())
+                else -> {
+                    // A child of the root is the only safe place to split.
+                    if (depth == 1) {
+                        if (chunkStart == -1L) {
+                            chunkStart = offset
+                        } else if (offset - chunkStart >= chunkSize) {
+                            chunks += Chunk(chunkStart, offset)
+                            chunkStart = offset
+                        }
+                    }
+                    val end = source.indexAfterOpeningTag()
+                    if (end != -1L && !source.isSelfClosing(end)) depth++
+                    skipTo(end)
+                }
+            }
+        }
+    }
+
+    /**
+     * Skips the prolog and the root element's opening tag. Returns false if the root element is
+     * self-closing, and so has no content.
+     */
+    private fun skipToRootContent(): Boolean {
+        while (true) {
+            val index = source.indexOf(OPENING_XML_ELEMENT)
+            if (index == -1L || !source.request(index + 2)) throw EOFException("Missing root element")
+            skip(index)
+            when (source.buffer[1]) {
+                BANG, QUESTION -> skipTo(source.indexAfterMarkup())
+                else -> {
+                    val end = source.indexAfterOpeningTag()
+                    if (end == -1L) throw EOFException(UNCLOSED_ROOT)
+                    if (source.isSelfClosing(end)) {
+                        skip(end)
+                        return false
+                    }
+                    rootNamespaces = readNamespaceDeclarations(source.buffer, 0, end)
+                    skip(end)
+                    return true
+                }
+            }
+        }
+    }
+
+    /** Skips the bytes before [end], which is -1 if the markup being skipped is not closed. */
+    private fun skipTo(end: Long) {
+        if (end == -1L) throw EOFException(UNCLOSED_ROOT)
+        skip(end)
+    }
+
+    private fun skip(byteCount: Long) {
+        source.skip(byteCount)
+        offset += byteCount
+    }
+
+    private companion object {
+        const val UNCLOSED_ROOT = "Unexpected end of file! The root element is not closed!"
+    }
+}
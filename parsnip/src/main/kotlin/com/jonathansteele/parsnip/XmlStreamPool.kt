@@ -0,0 +1,44 @@
+package com.jonathansteele.parsnip
+
+import okio.Buffer
+import okio.BufferedSink
+import okio.BufferedSource
+
+/**
+ * Keeps an idle [XmlReader] and [XmlWriter] per thread for the adapter entry points, so that their
+ * stacks are allocated once per thread instead of once per document. A read or write nested in
+ * another on the same thread finds nothing idle and creates its own.
+ */
+internal object XmlStreamPool {
+    // Recycled readers and writers point at their thread's empty buffer, so they don't hold on to the
+    // caller's source or sink. Buffers aren't thread-safe, so no two threads share one.
+    private val emptyBuffers = object : ThreadLocal<Buffer>() {
+        override fun initialValue() = Buffer()
+    }
+    private val readers = ThreadLocal<XmlReader>()
+    private val writers = ThreadLocal<XmlWriter>()
+
+    fun reader(source: BufferedSource): XmlReader {
+        val reader = readers.get() ?: return XmlReader(source)
+        readers.set(null)
+        reader.reset(source)
+        return reader
+    }
+
+    fun recycle(reader: XmlReader) {
+        reader.reset(emptyBuffers.get())
+        readers.set(reader)
+    }
+
+    fun writer(sink: BufferedSink): XmlWriter {
+        val writer = writers.get() ?: return XmlWriter(sink)
+        writers.set(null)
+        writer.reset(sink)
+        return writer
+    }
+
+    fun recycle(writer: XmlWriter) {
+        writer.reset(emptyBuffers.get().also { it.clear() })
+        writers.set(writer)
+    }
+}
@@ -5,12 +5,15 @@ import com.jonathansteele.parsnip.XmlScope.ELEMENT_OPENING
 import com.jonathansteele.parsnip.XmlScope.NONEMPTY_DOCUMENT
 import com.jonathansteele.parsnip.XmlScope.getPath
 import com.jonathansteele.parsnip.XmlScope.getTopStackElementAsToken
+import okio.Buffer
 import okio.BufferedSink
+import okio.ByteString
 import okio.ByteString.Companion.encodeUtf8
+import okio.Source
 import java.io.Closeable
 import java.io.IOException
 
-class XmlWriter(private val sink: BufferedSink): Closeable {
+class XmlWriter(private var sink: BufferedSink): Closeable {
     companion object {
         private const val DOUBLE_QUOTE = '"'.code.toByte()
         private const val OPENING_XML_ELEMENT = '<'.code.toByte()
@@ -18,6 +21,33 @@ class XmlWriter(private val sink: BufferedSink): Closeable {
         private val CLOSING_XML_ELEMENT_START = "</".encodeUtf8()
         private val INLINE_CLOSING_XML_ELEMENT = "/>".encodeUtf8()
         private val ATTRIBUTE_ASSIGNMENT_BEGIN = "=\"".encodeUtf8()
+        private val TEXT_ESCAPED = "<>&".encodeUtf8()
+        private const val SEGMENT_SIZE = 8192L
+        private const val BASE64_CONTENT = "(base64)"
+        private val DOUBLE_FRACTION = ".0".encodeUtf8()
+        // Double.toString() switches to an exponent from here on.
+        private const val PLAIN_DOUBLE_LIMIT = 10_000_000L
+
+        /*
+         * Escapes for the ASCII characters that can't appear as-is in text content, indexed by
+         * character. All other characters are written unchanged.
+         */
+        private val TEXT_REPLACEMENTS = arrayOfNulls<ByteString>(128).apply {
+            this['<'.code] = "&lt;".encodeUtf8()
+            this['>'.code] = "&gt;".encodeUtf8()
+            this['&'.code] = "&amp;".encodeUtf8()
+        }
+
+        /*
+         * Attribute values are written in double quotes, and whitespace other than spaces would be
+         * normalized to spaces when read back, so those are escaped too.
+         */
+        private val ATTRIBUTE_REPLACEMENTS = TEXT_REPLACEMENTS.copyOf().apply {
+            this['"'.code] = "&quot;".encodeUtf8()
+            this['\t'.code] = "&#9;".encodeUtf8()
+            this['\n'.code] = "&#10;".encodeUtf8()
+            this['\r'.code] = "&#13;".encodeUtf8()
+        }
     }
 
     private var stack = IntArray(32)
@@ -31,6 +61,19 @@ class XmlWriter(private val sink: BufferedSink): Closeable {
         stack[stackSize++] = XmlScope.EMPTY_DOCUMENT
     }
 
+    /**
+     * Makes this writer write a new document to [sink], keeping the stacks it has grown so far. The
+     * previous sink is neither flushed nor closed.
+     */
+    fun reset(sink: BufferedSink) {
+        this.sink = sink
+        pathNames.fill(null)
+        pathIndices.fill(0)
+        stackSize = 0
+        stack[stackSize++] = XmlScope.EMPTY_DOCUMENT
+        deferredName = null
+    }
+
     private fun pushStack(newTop: Int) {
         if (stackSize == stack.size) {
             val newStack = IntArray(stackSize * 2)
@@ -176,28 +219,128 @@ class XmlWriter(private val sink: BufferedSink): Closeable {
      * @param textContentValue The text content
      */
     fun text(textContentValue: String): XmlWriter {
+        if (!beginText()) throw textError(textContentValue)
+        writeEscaped(textContentValue, TEXT_REPLACEMENTS)
+        return this
+    }
+
+    /** Writes the digits of [value] as the text content of an element, without creating a String. */
+    fun text(value: Long): XmlWriter {
+        if (!beginText()) throw textError(value)
+        sink.writeDecimalLong(value)
+        return this
+    }
+
+    /** Writes [value] as the text content of an element, formatted the same way as an attribute value. */
+    fun text(value: Double): XmlWriter {
+        if (!beginText()) throw textError(value)
+        writeDouble(value)
+        return this
+    }
+
+    /**
+     * Writes [value], which must be UTF-8, as the text content of an element without decoding it to
+     * a String. Runs of bytes that need no escaping are copied straight into the sink.
+     */
+    fun text(value: ByteString): XmlWriter {
+        if (!beginText()) throw textError(value)
+        var last = 0
+        val size = value.size
+        for (i in 0 until size) {
+            val c = value[i].toInt()
+            if (c < 0) continue // Part of a multibyte character, which is never escaped.
+            val replacement = TEXT_REPLACEMENTS[c] ?: continue
+            if (last < i) sink.write(value, last, i - last)
+            sink.write(replacement)
+            last = i + 1
+        }
+        if (last < size) sink.write(value, last, size - last)
+        return this
+    }
+
+    /**
+     * Writes all the bytes of [source], which must be UTF-8, as the text content of an element. The
+     * bytes are escaped and moved into the sink one segment at a time, so content of any size can be
+     * written. [source] is exhausted but not closed.
+     */
+    fun text(source: Source): XmlWriter {
+        if (!beginText()) throw textError(source)
+        val buffer = Buffer()
+        while (source.read(buffer, SEGMENT_SIZE) != -1L) {
+            while (true) {
+                val index = buffer.indexOfElement(TEXT_ESCAPED)
+                if (index == -1L) break
+                sink.write(buffer, index)
+                sink.write(TEXT_REPLACEMENTS[buffer.readByte().toInt()]!!)
+            }
+            sink.write(buffer, buffer.size)
+            sink.emitCompleteSegments()
+        }
+        return this
+    }
+
+    /** Writes the base64 encoding of [value] as the text content of an element. */
+    fun base64(value: ByteArray): XmlWriter {
+        if (!beginText()) throw textError(BASE64_CONTENT)
+        val encoder = Base64Encoder(sink)
+        encoder.write(value)
+        encoder.finish()
+        return this
+    }
+
+    /** Writes the base64 encoding of [value] as the text content of an element. */
+    fun base64(value: ByteString): XmlWriter {
+        if (!beginText()) throw textError(BASE64_CONTENT)
+        val encoder = Base64Encoder(sink)
+        encoder.write(value)
+        encoder.finish()
+        return this
+    }
+
+    /**
+     * Writes the base64 encoding of all the bytes of [source] as the text content of an element,
+     * encoding one segment at a time. [source] is exhausted but not closed.
+     */
+    fun base64(source: Source): XmlWriter {
+        if (!beginText()) throw textError(BASE64_CONTENT)
+        val encoder = Base64Encoder(sink)
+        val buffer = Buffer()
+        while (source.read(buffer, SEGMENT_SIZE) != -1L) {
+            encoder.write(buffer)
+        }
+        encoder.finish()
+        return this
+    }
+
+    /**
+     * Moves into the content of the current element, so that text can be written. Returns false if
+     * text can't be written here.
+     */
+    private fun beginText(): Boolean {
         when (peekStack()) {
             ELEMENT_OPENING -> {
                 sink.writeByte(CLOSING_XML_ELEMENT.toInt())
                 replaceTopOfStack(ELEMENT_CONTENT)
-                sink.writeUtf8(textContentValue)
-            }
-            ELEMENT_CONTENT -> sink.writeUtf8(textContentValue)
-            else -> {
-                val elementName = pathNames[stackSize - 1]
-                if (elementName != null) {
-                    throw syntaxError(
-                        "Error while trying to write text content into xml element < $elementName > " +
-                                "$textContentValue </ $elementName>." +
-                                " Xml scope was " + getTopStackElementAsToken(stackSize, stack)
-                    )
-                } else {
-                    throw syntaxError("Error while trying to write text content $textContentValue." +
-                            " Xml scope was " + getTopStackElementAsToken(stackSize, stack))
-                }
             }
+            ELEMENT_CONTENT -> Unit
+            else -> return false
+        }
+        return true
+    }
+
+    /** Returns the error for text that [beginText] refused, describing it with [content]. */
+    private fun textError(content: Any): IOException {
+        val elementName = pathNames[stackSize - 1]
+        return if (elementName != null) {
+            syntaxError(
+                "Error while trying to write text content into xml element < $elementName > " +
+                        "$content </ $elementName>." +
+                        " Xml scope was " + getTopStackElementAsToken(stackSize, stack)
+            )
+        } else {
+            syntaxError("Error while trying to write text content $content." +
+                    " Xml scope was " + getTopStackElementAsToken(stackSize, stack))
         }
-        return this
     }
 
     fun name(name: String): XmlWriter = name(null, name)
@@ -219,16 +362,77 @@ class XmlWriter(private val sink: BufferedSink): Closeable {
             deferredName = null
             return this
         }
-        if (ELEMENT_OPENING == peekStack()) {
-            sink.writeByte(' '.code) // Write a whitespace
-                .writeUtf8(deferredName!!)
-                .write(ATTRIBUTE_ASSIGNMENT_BEGIN)
-                .writeUtf8(value)
+        if (beginValue()) {
+            writeEscaped(value, ATTRIBUTE_REPLACEMENTS)
+            sink.writeByte(DOUBLE_QUOTE.toInt())
+        }
+        return this
+    }
+
+    /** Writes the digits of [value] as an attribute value, without creating a String. */
+    fun value(value: Long): XmlWriter {
+        if (beginValue()) {
+            sink.writeDecimalLong(value)
                 .writeByte(DOUBLE_QUOTE.toInt())
         }
         return this
     }
 
+    /**
+     * Writes [value] as an attribute value, the way [Double.toString] does. Whole numbers below ten
+     * million, which it writes without an exponent, are written as digits without creating a String.
+     */
+    fun value(value: Double): XmlWriter {
+        if (beginValue()) {
+            writeDouble(value)
+            sink.writeByte(DOUBLE_QUOTE.toInt())
+        }
+        return this
+    }
+
+    private fun writeDouble(value: Double) {
+        val whole = value.toLong()
+        // -0.0 would lose its sign.
+        if (whole.toDouble() == value && whole > -PLAIN_DOUBLE_LIMIT && whole < PLAIN_DOUBLE_LIMIT &&
+            (whole != 0L || value.toRawBits() == 0L)
+        ) {
+            sink.writeDecimalLong(whole)
+                .write(DOUBLE_FRACTION)
+        } else {
+            sink.writeUtf8(value.toString())
+        }
+    }
+
+    /**
+     * Writes the name given to [name] and the opening quote of its value. Returns false if no
+     * attribute can be written here.
+     */
+    private fun beginValue(): Boolean {
+        if (ELEMENT_OPENING != peekStack()) return false
+        sink.writeByte(' '.code) // Write a whitespace
+            .writeUtf8(deferredName!!)
+            .write(ATTRIBUTE_ASSIGNMENT_BEGIN)
+        return true
+    }
+
+    /**
+     * Writes [value] in a single pass, copying runs of characters that need no escaping straight
+     * into the sink and writing the escape from [replacements] for those that do.
+     */
+    private fun writeEscaped(value: String, replacements: Array<ByteString?>) {
+        var last = 0
+        val length = value.length
+        for (i in 0 until length) {
+            val c = value[i].code
+            if (c >= 128) continue
+            val replacement = replacements[c] ?: continue
+            if (last < i) sink.writeUtf8(value, last, i)
+            sink.write(replacement)
+            last = i + 1
+        }
+        if (last < length) sink.writeUtf8(value, last, length)
+    }
+
     fun namespace(namespace: Namespace) : XmlWriter {
         return if (!namespace.alias.isNullOrEmpty()) {
             name("xmlns:" + namespace.alias).value(namespace.namespace!!)
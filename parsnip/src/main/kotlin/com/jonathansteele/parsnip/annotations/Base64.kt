@@ -1,34 +1,25 @@
 /*
- * Copyright (C) 2015 Hannes Dorfmann
- * Copyright (C) 2015 Tickaroo, Inc.
+ * Copyright 2015 Evan Tatarka.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
  *
- *        http://www.apache.org/licenses/LICENSE-2.0
+ *    http://www.apache.org/licenses/LICENSE-2.0
  *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
  * See the License for the specific language governing permissions and
  * limitations under the License.
- *
  */
-package com.jonathansteele.parsnip.tikxml.small
-
-import com.tickaroo.tikxml.TikXml
-import okio.Buffer
+package com.jonathansteele.parsnip.annotations
 
 /**
- * @author Hannes Dorfmann
+ * Binds a `ByteString` field to the base64 encoding of its bytes. `ByteArray` fields are always
+ * base64, without this annotation an `@Text` `ByteString` field holds the text itself.
  */
-fun parseTikXml(xml: String?) {
-    val tikXml = TikXml.Builder().exceptionOnUnreadXml(false).build()
-    val employee = tikXml.read(
-        Buffer().writeUtf8(
-            xml!!
-        ), Employee::class.java
-    )
-    println("TikXml " + employee.name)
-}
\ No newline at end of file
+@Retention(AnnotationRetention.RUNTIME)
+@Target(AnnotationTarget.FIELD)
+@XmlQualifier
+annotation class Base64
@@ -1,8 +1,11 @@
 package com.jonathansteele.parsnip
 
 import com.jonathansteele.parsnip.classes.*
+import okio.Buffer
 import org.junit.Assert
 import org.junit.Test
+import java.io.File
+import java.util.stream.Collectors
 
 class ObjectDeserializer {
     @Test
@@ -12,6 +15,141 @@ class ObjectDeserializer {
         Assert.assertNotNull(emptyObject)
     }
 
+    @Test
+    fun checkAdapterIsCached() {
+        val parsnip = Parsnip.Builder().build()
+        val first = parsnip.adapter(StringObject::class.java)
+        val second = parsnip.adapter(StringObject::class.java)
+        Assert.assertSame(first, second)
+        Assert.assertEquals(1L, parsnip.adapterCacheHitCount)
+        Assert.assertEquals(1L, parsnip.adapterCacheMissCount)
+    }
+
+    @Test
+    fun checkPrewarmedAdapterIsCached() {
+        val parsnip = Parsnip.Builder().prewarm(StringObject::class.java).build()
+        parsnip.prewarmed.get()
+        parsnip.adapter(StringObject::class.java)
+        Assert.assertEquals(1L, parsnip.adapterCacheHitCount)
+        Assert.assertEquals(1L, parsnip.adapterCacheMissCount)
+    }
+
+    @Test
+    fun checkFailedPrewarmIsReported() {
+        val parsnip = Parsnip.Builder()
+            .add(XmlAdapter.Factory { type, _, _ ->
+                if (type == StringObject::class.java) throw IllegalStateException("broken") else null
+            })
+            .prewarm(StringObject::class.java)
+            .prewarmExecutor { it.run() }
+            .build()
+        Assert.assertTrue(parsnip.prewarmed.isCompletedExceptionally)
+    }
+
+    @Test
+    fun checkStreamChildren() {
+        val parsnip = Parsnip.Builder().build()
+        val stringObjectAdapter = parsnip.adapter(StringObject::class.java)
+        val xml = Buffer().writeUtf8(
+            "<catalog version=\"1\"><ignored><StringObject string1=\"no\"/></ignored>" +
+                "<items><StringObject string1=\"one\"/>text<StringObject string1=\"two\"/></items>" +
+                "<items><StringObject string1=\"three\"/></items></catalog>"
+        )
+        val strings = XmlAdapter.streamChildren(xml, "/catalog/items/StringObject", stringObjectAdapter)
+            .map { it.string1 }
+            .toList()
+        Assert.assertEquals(listOf("one", "two", "three"), strings)
+    }
+
+    @Test
+    fun checkStreamChildrenWithPrefixedPath() {
+        val parsnip = Parsnip.Builder().build()
+        val stringObjectAdapter = parsnip.adapter(StringObject::class.java)
+        val xml = Buffer().writeUtf8(
+            "<atom:feed xmlns:atom=\"http://www.w3.org/2005/Atom\"><feed><StringObject string1=\"no\"/></feed>" +
+                "<atom:items><StringObject string1=\"one\"/></atom:items>" +
+                "<items><StringObject string1=\"no\"/></items></atom:feed>"
+        )
+        val strings = XmlAdapter.streamChildren(xml, "/atom:feed/atom:items/StringObject", stringObjectAdapter)
+            .map { it.string1 }
+            .toList()
+        Assert.assertEquals(listOf("one"), strings)
+    }
+
+    @Test
+    fun checkFromPath() {
+        val parsnip = Parsnip.Builder().build()
+        val stringObjectAdapter = parsnip.adapter(StringObject::class.java)
+        val file = File.createTempFile("parsnip", ".xml")
+        try {
+            file.writeText("<StringObject string1=\"test\" string2=\"a &amp; b\" />")
+            val stringObject = stringObjectAdapter.fromXml(file.toPath())
+            Assert.assertEquals("test", stringObject.string1)
+            Assert.assertEquals("a & b", stringObject.string2)
+        } finally {
+            file.delete()
+        }
+    }
+
+    @Test
+    fun checkParallelStream() {
+        val parsnip = Parsnip.Builder().build()
+        val stringObjectAdapter = parsnip.adapter(StringObject::class.java)
+        val file = File.createTempFile("parsnip", ".xml")
+        try {
+            file.writeText(buildString {
+                append("<?xml version=\"1.0\"?><!-- <StringObject string1=\"no\"/> --><catalog>")
+                repeat(10_000) { i ->
+                    append("<StringObject string1=\"").append(i).append("\"/>")
+                    append("text &amp; <![CDATA[<StringObject/>]]>")
+                    append("<ignored note='<StringObject/>'><![CDATA[</catalog>]]></ignored>\n")
+                }
+                append("trailing text</catalog>")
+            })
+            val strings = parsnip.parallelStream(file.toPath(), "StringObject", stringObjectAdapter).use { stream ->
+                stream.map { it.string1 }.collect(Collectors.toList())
+            }
+            Assert.assertEquals((0 until 10_000).map { it.toString() }, strings)
+        } finally {
+            file.delete()
+        }
+    }
+
+    @Test
+    fun checkParallelStreamWithRootNamespaces() {
+        val parsnip = Parsnip.Builder().build()
+        val namespaceObjectAdapter = parsnip.adapter(NamespaceObject::class.java)
+        val file = File.createTempFile("parsnip", ".xml")
+        try {
+            file.writeText(buildString {
+                append("<feed xmlns:foo=\"ns\">")
+                repeat(10_000) { i ->
+                    append("<NamespaceObject foo:attribute=\"").append(i).append("\" attribute=\"no\">")
+                    append("<foo:tag string1=\"test\"/></NamespaceObject>\n")
+                }
+                append("</feed>")
+            })
+            val attributes = parsnip.parallelStream(file.toPath(), "NamespaceObject", namespaceObjectAdapter).use { stream ->
+                stream.map { it.attribute }.collect(Collectors.toList())
+            }
+            Assert.assertEquals((0 until 10_000).map { it.toString() }, attributes)
+        } finally {
+            file.delete()
+        }
+    }
+
+    @Test
+    fun checkRecordSplitter() {
+        val xml = Buffer().writeUtf8("<?xml version=\"1.0\"?><root a='>'><r><r/></r><!--<r>--><r/><r>]]></r></root>")
+        val chunks = XmlRecordSplitter(xml, 1L).split().map { it.start to it.end }
+        Assert.assertEquals(listOf(33L to 54L, 54L to 58L, 58L to 68L), chunks)
+
+        val namespaced = Buffer().writeUtf8("<root xmlns='a' xmlns:b=\"b&amp;c\" c:d='e'><r/></root>")
+        val splitter = XmlRecordSplitter(namespaced, 1L)
+        splitter.split()
+        Assert.assertEquals(mapOf("" to "a", "b" to "b&c"), splitter.rootNamespaces)
+    }
+
     @Test
     fun checkStringObject() {
         val parsnip = Parsnip.Builder().build()
@@ -49,6 +187,26 @@ class ObjectDeserializer {
         Assert.assertEquals("test", textObject.text)
     }
 
+    @Test
+    fun checkByteStringTextObject() {
+        val parsnip = Parsnip.Builder().build()
+        val adapter = parsnip.adapter(ByteStringTextObject::class.java)
+        val textObject = adapter.fromXml("<ByteStringTextObject>a &amp; b</ByteStringTextObject>")
+        Assert.assertEquals("a & b", textObject.text.utf8())
+        Assert.assertEquals("<ByteStringTextObject>a &amp; b</ByteStringTextObject>", adapter.toXml(textObject))
+    }
+
+    @Test
+    fun checkBase64Object() {
+        val parsnip = Parsnip.Builder().build()
+        val adapter = parsnip.adapter(Base64Object::class.java)
+        val xml = "<Base64Object checksum=\"AQI=\">aGVs\nbG8=</Base64Object>"
+        val base64Object = adapter.fromXml(xml)
+        Assert.assertEquals("hello", String(base64Object.data))
+        Assert.assertEquals("0102", base64Object.checksum.hex())
+        Assert.assertEquals("<Base64Object checksum=\"AQI=\">aGVsbG8=</Base64Object>", adapter.toXml(base64Object))
+    }
+
     @Test
     fun checkTagObject() {
         val parsnip = Parsnip.Builder().build()
@@ -1,6 +1,7 @@
 package com.jonathansteele.parsnip
 
 import com.jonathansteele.parsnip.classes.*
+import okio.Buffer
 import org.junit.Assert
 import org.junit.Test
 
@@ -93,4 +94,21 @@ class ObjectSerializer {
         val result = adapter.toXml(sameNameObject)
         Assert.assertEquals("<SameNameObject name=\"value\"><name string1=\"value\"/></SameNameObject>", result)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun checkSourceTextObjectWrittenTwice() {
+        val parsnip = Parsnip.Builder().build()
+        val adapter = parsnip.adapter(SourceTextObject::class.java)
+        val sourceTextObject = SourceTextObject(Buffer().writeUtf8("a & b"))
+        Assert.assertEquals("<SourceTextObject>a &amp; b</SourceTextObject>", adapter.toXml(sourceTextObject))
+        Assert.assertEquals("<SourceTextObject>a &amp; b</SourceTextObject>", adapter.toXml(sourceTextObject))
+    }
+
+    @Test
+    fun checkIntTextObject() {
+        val parsnip = Parsnip.Builder().build()
+        val adapter = parsnip.adapter(IntTextObject::class.java)
+        val result = adapter.toXml(IntTextObject(-42))
+        Assert.assertEquals("<IntTextObject>-42</IntTextObject>", result)
+    }
+}
@@ -1,10 +1,15 @@
 package com.jonathansteele.parsnip
 
 import okio.Buffer
+import okio.ByteString.Companion.encodeUtf8
+import okio.ByteString.Companion.toByteString
+import okio.buffer
 import org.junit.Assert.assertEquals
-import org.junit.Ignore
+import org.junit.Assert.assertNotEquals
 import org.junit.Test
+import java.io.File
 import java.io.IOException
+import java.io.RandomAccessFile
 
 class XmlReaderTest {
     val xmlReader = { xml: String -> XmlReader(Buffer().writeUtf8(xml)) }
@@ -117,6 +122,90 @@ class XmlReaderTest {
         assertEquals("value", text)
     }
 
+    @Test
+    fun checkTagWithEntitiesInText() {
+        val reader = xmlReader("<test>a &amp; b &lt;c&gt; &quot;&apos; &#65;&#x42;&#x1F600;</test>")
+        reader.beginTag()
+        reader.nextTagName()
+        val text = reader.nextText()
+        reader.endTag()
+
+        assertEquals("a & b <c> \"' AB\uD83D\uDE00", text)
+    }
+
+    @Test(expected = IOException::class)
+    fun checkTagWithUnterminatedEntityInText() {
+        val reader = xmlReader("<test>a &amp b</test>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextText()
+    }
+
+    @Test
+    fun checkTextAsByteString() {
+        val reader = xmlReader("<test>a &amp; b &#x1F600;</test>")
+        reader.beginTag()
+        reader.nextTagName()
+        val text = reader.nextTextAsByteString()
+        reader.endTag()
+
+        assertEquals("a & b \uD83D\uDE00".encodeUtf8(), text)
+    }
+
+    @Test
+    fun checkTextToSinkAcrossSegments() {
+        val content = "x".repeat(20000) + "&lt;" + "y".repeat(20000)
+        val reader = xmlReader("<test>$content</test>")
+        reader.beginTag()
+        reader.nextTagName()
+        val sink = Buffer()
+        reader.nextTextTo(sink)
+        reader.endTag()
+
+        assertEquals(content.replace("&lt;", "<"), sink.readUtf8())
+    }
+
+    @Test
+    fun checkCDATAToSink() {
+        val reader = xmlReader("<test><![CDATA[<a>text]]</b>]]></test>")
+        reader.beginTag()
+        reader.nextTagName()
+        val sink = Buffer()
+        reader.nextTextTo(sink)
+        reader.endTag()
+
+        assertEquals("<a>text]]</b>", sink.readUtf8())
+    }
+
+    @Test
+    fun checkBase64Text() {
+        val bytes = ByteArray(20000) { it.toByte() }.toByteString()
+        val reader = xmlReader("<test><a>${bytes.base64().chunked(76).joinToString("\n")}</a><b>YQ==</b><c>YWI</c></test>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.beginTag()
+        reader.nextTagName()
+        assertEquals(bytes, reader.nextBase64())
+        reader.endTag()
+        reader.beginTag()
+        reader.nextTagName()
+        assertEquals("a".encodeUtf8(), reader.nextBase64())
+        reader.endTag()
+        reader.beginTag()
+        reader.nextTagName()
+        assertEquals("ab".encodeUtf8(), reader.nextBase64())
+        reader.endTag()
+        reader.endTag()
+    }
+
+    @Test(expected = XmlDataException::class)
+    fun checkInvalidBase64Text() {
+        val reader = xmlReader("<test>YQ=!</test>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextBase64()
+    }
+
     // Attribute
     @Test
     fun checkTagWithSingleQuotedAttribute() {
@@ -158,6 +247,20 @@ class XmlReaderTest {
         assertEquals("value2", value2)
     }
 
+    @Test
+    fun checkTagWithEntitiesInAttribute() {
+        val reader = xmlReader("<test attribute='&lt;a&gt; &amp; &#x42;' path='C:\\new'/>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        val value = reader.nextValue()
+        reader.nextAttribute()
+        val path = reader.nextValue()
+
+        assertEquals("<a> & B", value)
+        assertEquals("C:\\new", path)
+    }
+
     // Namespace
     @Test
     fun checkTagWithNamespaceName() {
@@ -233,6 +336,141 @@ class XmlReaderTest {
         assertEquals("value", value)
     }
 
+    @Test
+    fun checkAttributeNamespaceIsResolved() {
+        val reader = xmlReader("<test1 xmlns:ns='foo'><test2 xmlns:ns='bar' ns:a='1'/><test3 ns:a='2'/></test1>")
+        val namespace = Namespace()
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        reader.nextValue()
+
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        reader.skipValue()
+        reader.nextAttribute(namespace)
+        reader.nextValue()
+        assertEquals("bar", namespace.namespace)
+        reader.endTag()
+
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute(namespace)
+        reader.nextValue()
+        assertEquals("foo", namespace.namespace)
+    }
+
+    @Test
+    fun checkAttributeInPath() {
+        val reader = xmlReader("<a b='1' c = '2'/>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        assertEquals("/a[@b]", reader.path)
+        reader.nextValue()
+        assertEquals("/a", reader.path)
+        reader.nextAttribute()
+        assertEquals("/a[@c]", reader.path)
+        reader.nextIntValue()
+        assertEquals("/a", reader.path)
+        reader.endTag()
+    }
+
+    @Test
+    fun checkNamespaceDeclarationReadAsNumber() {
+        val reader = xmlReader("<test xmlns:ns='1' ns:a='2' b='true'/>")
+        val namespace = Namespace()
+        reader.beginTag()
+        reader.nextTagName()
+        assertEquals("ns", reader.nextAttribute())
+        assertEquals(1, reader.nextIntValue())
+        assertEquals("a", reader.nextAttribute(namespace))
+        assertEquals("1", namespace.namespace)
+        assertEquals(2L, reader.nextLongValue())
+        assertEquals("b", reader.nextAttribute())
+        assertEquals(true, reader.nextBooleanValue())
+        reader.endTag()
+    }
+
+    @Test
+    fun checkNamespaceIds() {
+        val known = Namespace("ns", "urn:known")
+        val reader = xmlReader("<test xmlns='urn:known' xmlns:other='urn:unknown'><tag/><other:tag/><none:tag/></test>")
+        val namespace = Namespace()
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        reader.nextValue()
+        reader.nextAttribute()
+        reader.nextValue()
+
+        reader.beginTag()
+        reader.nextTagName(namespace)
+        assertEquals(known.id, namespace.id)
+        assertEquals(known.id, reader.namespaceId)
+        reader.endTag()
+        reader.beginTag()
+        reader.nextTagName(namespace)
+        assertEquals(Namespace.UNKNOWN_ID, namespace.id)
+        assertEquals(Namespace.UNKNOWN_ID, reader.namespaceId)
+        reader.endTag()
+        reader.beginTag()
+        reader.nextTagName(namespace)
+        assertEquals(Namespace.NO_ID, namespace.id)
+        assertEquals(Namespace.NO_ID, reader.namespaceId)
+    }
+
+    @Test
+    fun checkNamespaceIdsOfLaterNamespaceAndUndeclaredDefault() {
+        val reader = xmlReader("<test xmlns='urn:later' xmlns:a='urn:later'><a:tag/><b xmlns=''><tag/></b></test>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        reader.nextValue()
+        reader.nextAttribute()
+        reader.nextValue()
+        // Registered after the declarations were read.
+        val later = Namespace("a", "urn:later")
+
+        reader.beginTag()
+        reader.nextTagName()
+        assertEquals(later.id, reader.namespaceId)
+        reader.endTag()
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        reader.nextValue()
+        reader.beginTag()
+        reader.nextTagName()
+        assertEquals(Namespace.NO_ID, reader.namespaceId)
+        assertEquals(Namespace.NO_ID, Namespace().id)
+    }
+
+    @Test
+    fun checkClosingTagWithNamespace() {
+        val reader = xmlReader("<ns:test1 xmlns:ns='foo'><ns:test2>text</ns:test2></ns:test1>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        reader.nextValue()
+        reader.beginTag()
+        reader.nextTagName()
+        assertEquals("/ns:test1/ns:test2", reader.path)
+        reader.nextText()
+        reader.endTag()
+        reader.endTag()
+        assertEquals(XmlReader.Token.END_DOCUMENT, reader.peek())
+    }
+
+    @Test(expected = IOException::class)
+    fun checkClosingTagWithWrongNamespace() {
+        val reader = xmlReader("<ns:test></other:test>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.endTag()
+    }
+
     @Test
     fun checkTagWithDefaultNamespace() {
         val reader = xmlReader("<test1 xmlns='foo'><test2/></test1>")
@@ -258,6 +496,138 @@ class XmlReaderTest {
         assertEquals("attribute", attribute)
     }
 
+    // Select
+    @Test
+    fun checkSelectTag() {
+        val options = XmlReader.Options.of("test", "test1", "other")
+        val reader = xmlReader("<test1><test/><unknown><test/></unknown></test1>")
+        reader.beginTag()
+        assertEquals(1, reader.selectTag(options))
+        reader.beginTag()
+        assertEquals(0, reader.selectTag(options))
+        reader.endTag()
+        reader.beginTag()
+        assertEquals(-1, reader.selectTag(options))
+        reader.skip()
+        reader.endTag()
+    }
+
+    @Test
+    fun checkSelectAttribute() {
+        val options = XmlReader.Options.of("attribute", "attr")
+        val reader = xmlReader("<test attr='value1' attributes='value2' attribute='value3'/>")
+        reader.beginTag()
+        reader.nextTagName()
+        assertEquals(1, reader.selectAttribute(options))
+        assertEquals("value1", reader.nextValue())
+        assertEquals(-1, reader.selectAttribute(options))
+        reader.skipValue()
+        assertEquals(0, reader.selectAttribute(options))
+        assertEquals("value3", reader.nextValue())
+        reader.endTag()
+    }
+
+    // Primitive values
+    @Test
+    fun checkPrimitiveValues() {
+        val reader = xmlReader(
+            "<test int='-42' long=\"987654321987654321\" double='12.5' exponent='1e3' " +
+                "boolean='true' upper='TRUE'/>"
+        )
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        assertEquals(-42, reader.nextIntValue())
+        reader.nextAttribute()
+        assertEquals(987654321987654321L, reader.nextLongValue())
+        reader.nextAttribute()
+        assertEquals(12.5, reader.nextDoubleValue(), 0.0)
+        reader.nextAttribute()
+        assertEquals(1000.0, reader.nextDoubleValue(), 0.0)
+        reader.nextAttribute()
+        assertEquals(true, reader.nextBooleanValue())
+        reader.nextAttribute()
+        assertEquals(true, reader.nextBooleanValue())
+        reader.endTag()
+    }
+
+    @Test(expected = XmlDataException::class)
+    fun checkIntValueOutOfRange() {
+        val reader = xmlReader("<test int='2147483648'/>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        reader.nextIntValue()
+    }
+
+    // Reset
+    @Test
+    fun checkResetReadsNewDocument() {
+        val reader = xmlReader("<test1 xmlns:ns='foo'><ns:unfinished ns:a='1'>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.nextAttribute()
+        reader.nextValue()
+        reader.beginTag()
+        reader.nextTagName()
+        assertNotEquals(Namespace.NO_ID, reader.namespaceId)
+
+        val namespace = Namespace()
+        reader.reset(Buffer().writeUtf8("<test2 ns:a='2'>text</test2>"))
+        assertEquals(Namespace.NO_ID, reader.namespaceId)
+        reader.beginTag()
+        assertEquals("test2", reader.nextTagName())
+        assertEquals("a", reader.nextAttribute(namespace))
+        assertEquals(null, namespace.namespace)
+        assertEquals("2", reader.nextValue())
+        assertEquals("text", reader.nextText())
+        reader.endTag()
+        assertEquals(XmlReader.Token.END_DOCUMENT, reader.peek())
+    }
+
+    // Memory-mapped file
+    @Test
+    fun checkMappedFileAcrossWindows() {
+        val file = File.createTempFile("parsnip", ".xml")
+        try {
+            file.writeText("<test attribute='value'>a &amp; b<![CDATA[<c>]]></test>")
+            RandomAccessFile(file, "r").use { raf ->
+                // A window of 3 bytes splits every token across mappings.
+                val reader = XmlReader(MappedFileSource(raf.channel, windowSize = 3).buffer())
+                reader.beginTag()
+                assertEquals("test", reader.nextTagName())
+                assertEquals("attribute", reader.nextAttribute())
+                assertEquals("value", reader.nextValue())
+                assertEquals("a & b", reader.nextText())
+                assertEquals("<c>", reader.nextText())
+                reader.endTag()
+                assertEquals(XmlReader.Token.END_DOCUMENT, reader.peek())
+            }
+        } finally {
+            file.delete()
+        }
+    }
+
+    // Skip
+    @Test
+    fun checkSkipNestedContent() {
+        val reader = xmlReader(
+            "<test1><skipped a='x>y' b=\"/>\"><inner/><!-- </skipped> --><![CDATA[</skipped>]]>" +
+                "text<inner>more</inner></skipped><test2/></test1>"
+        )
+        reader.beginTag()
+        reader.nextTagName()
+        reader.beginTag()
+        reader.nextTagName()
+        reader.skip()
+        reader.beginTag()
+        val tag = reader.nextTagName()
+        reader.endTag()
+        reader.endTag()
+
+        assertEquals("test2", tag)
+    }
+
     @Test
     fun checkTagWithCDATA() {
         val reader = xmlReader("<test><![CDATA[<a>text</b>]]></test>")
@@ -308,17 +678,24 @@ class XmlReaderTest {
         reader.endTag()
     }
 
-    // TODO: This should Fail
-    @Test
-    @Ignore
+    @Test(expected = XmlDataException::class)
     fun checkIncorrectlyDuplicatedAttribute() {
-        val reader = xmlReader("<test attribute='value1' attribute='value2/>")
+        val reader = xmlReader("<test attribute='value1' attribute='value2'/>")
         reader.beginTag()
         reader.nextTagName()
         reader.nextAttribute()
         reader.nextValue()
         reader.nextAttribute()
+    }
 
-        //assertEquals("Duplicate attribute 'attribute' at path /test", error?.getMessage())
+    @Test(expected = XmlDataException::class)
+    fun checkIncorrectlyDuplicatedSelectedAttribute() {
+        val options = XmlReader.Options.of("attribute")
+        val reader = xmlReader("<test attribute='value1' attribute='value2'/>")
+        reader.beginTag()
+        reader.nextTagName()
+        reader.selectAttribute(options)
+        reader.skipValue()
+        reader.selectAttribute(options)
     }
 }
\ No newline at end of file
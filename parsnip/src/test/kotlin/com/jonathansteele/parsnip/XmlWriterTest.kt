@@ -1,6 +1,8 @@
 package com.jonathansteele.parsnip
 
 import okio.Buffer
+import okio.ByteString.Companion.encodeUtf8
+import okio.ByteString.Companion.toByteString
 import org.junit.Assert.assertEquals
 import org.junit.Test
 
@@ -118,7 +120,7 @@ class XmlWriterTest {
         val result = xmlWriter {
             it.beginTag("test").name("attribute").value("\"\'<>&").endTag()
         }
-        assertEquals("<test attribute=\"\"'<>&\"/>", result)
+        assertEquals("<test attribute=\"&quot;'&lt;&gt;&amp;\"/>", result)
     }
 
     @Test
@@ -126,6 +128,87 @@ class XmlWriterTest {
         val result = xmlWriter {
             it.beginTag("test").text("\"\'<>&").endTag()
         }
-        assertEquals("<test>\"'<>&</test>", result)
+        assertEquals("<test>\"'&lt;&gt;&amp;</test>", result)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun checkTextByteStringCharacterToReplace() {
+        val result = xmlWriter {
+            it.beginTag("test").text("\"\'<>& \u00e9".encodeUtf8()).endTag()
+        }
+        assertEquals("<test>\"'&lt;&gt;&amp; \u00e9</test>", result)
+    }
+
+    @Test
+    fun checkTextSourceCharacterToReplace() {
+        val content = "a<b".repeat(5000)
+        val result = xmlWriter {
+            it.beginTag("test").text(Buffer().writeUtf8(content)).endTag()
+        }
+        assertEquals("<test>${content.replace("<", "&lt;")}</test>", result)
+    }
+
+    @Test
+    fun checkBase64Text() {
+        for (size in 0..4) {
+            val bytes = ByteArray(size) { (it * 67).toByte() }
+            val result = xmlWriter {
+                it.beginTag("test").base64(bytes).endTag()
+            }
+            assertEquals("<test>${bytes.toByteString().base64()}</test>", result)
+        }
+    }
+
+    @Test
+    fun checkBase64SourceText() {
+        val bytes = ByteArray(20000) { it.toByte() }.toByteString()
+        val result = xmlWriter {
+            it.beginTag("test").base64(Buffer().write(bytes)).endTag()
+        }
+        assertEquals("<test>${bytes.base64()}</test>", result)
+    }
+
+    @Test
+    fun checkTagWithNumberAttributes() {
+        val doubles = listOf(0.0, -0.0, -3.0, 1.5, 9_999_999.0, 1e7, Double.NaN)
+        val result = xmlWriter { writer ->
+            writer.beginTag("test").name("long").value(Long.MIN_VALUE)
+            doubles.forEachIndexed { i, value -> writer.name("d$i").value(value) }
+            writer.endTag()
+        }
+        val expected = doubles.withIndex().joinToString("") { (i, value) -> " d$i=\"$value\"" }
+        assertEquals("<test long=\"${Long.MIN_VALUE}\"$expected/>", result)
+    }
+
+    @Test
+    fun checkNumberText() {
+        val result = xmlWriter {
+            it.beginTag("test").text(-1234567890123L).endTag()
+        }
+        assertEquals("<test>-1234567890123</test>", result)
+    }
+
+    @Test
+    fun checkDoubleText() {
+        val result = xmlWriter {
+            it.beginTag("test")
+                .beginTag("a").text(-2.0).endTag()
+                .beginTag("b").text(0.5).endTag()
+                .endTag()
+        }
+        assertEquals("<test><a>-2.0</a><b>0.5</b></test>", result)
+    }
+
+    @Test
+    fun checkResetWritesNewDocument() {
+        val first = Buffer()
+        val writer = XmlWriter(first)
+        writer.beginTag("test1").beginTag("unfinished")
+        val second = Buffer()
+        writer.reset(second)
+        writer.beginTag("test2").name("attribute").value("value").endTag()
+
+        assertEquals("<test1><unfinished", first.readUtf8())
+        assertEquals("<test2 attribute=\"value\"/>", second.readUtf8())
+    }
+}
@@ -1,28 +1,23 @@
 /*
- * Copyright (C) 2015 Hannes Dorfmann
- * Copyright (C) 2015 Tickaroo, Inc.
+ * Copyright 2015 Evan Tatarka.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
  *
- *        http://www.apache.org/licenses/LICENSE-2.0
+ *    http://www.apache.org/licenses/LICENSE-2.0
  *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
  * See the License for the specific language governing permissions and
  * limitations under the License.
- *
  */
-package com.jonathansteele.parsnip.tikxml.small
 
-import com.tickaroo.tikxml.annotation.Xml
-import com.tickaroo.tikxml.annotation.PropertyElement
+package com.jonathansteele.parsnip.classes
+
+import com.jonathansteele.parsnip.annotations.Base64
+import com.jonathansteele.parsnip.annotations.Text
+import okio.ByteString
 
-@Xml
-data class Employee(
-    @JvmField
-    @PropertyElement
-    var name: String? = null
-)
\ No newline at end of file
+class Base64Object(@Text val data: ByteArray, @Base64 val checksum: ByteString)
@@ -15,22 +15,39 @@
  */
 package com.jonathansteele.parsnip
 
-import retrofit2.Retrofit
-import kotlin.jvm.JvmOverloads
 import okhttp3.RequestBody
 import okhttp3.ResponseBody
 import retrofit2.Converter
+import retrofit2.Response
+import retrofit2.Retrofit
+import retrofit2.http.Body
+import java.lang.reflect.Method
+import java.lang.reflect.Modifier
+import java.lang.reflect.ParameterizedType
 import java.lang.reflect.Type
+import java.lang.reflect.WildcardType
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.coroutines.Continuation
+import kotlin.jvm.JvmOverloads
 
 @Suppress("unused")
-class ParsnipConverterFactory private constructor(private val parsnip: Parsnip) : Converter.Factory() {
+class ParsnipConverterFactory private constructor(
+    private val parsnip: Parsnip,
+    private val bufferRequestBodies: Boolean
+) : Converter.Factory() {
+    // Converters by type and qualifier annotations, shared by every method and Retrofit instance.
+    private val responseConverters = ConcurrentHashMap<Any, Converter<ResponseBody, *>>()
+    private val requestConverters = ConcurrentHashMap<Any, Converter<*, RequestBody>>()
+
     override fun responseBodyConverter(
         type: Type,
         annotations: Array<Annotation>,
         retrofit: Retrofit
     ): Converter<ResponseBody, *> {
-        val adapter = parsnip.adapter<Any>(type)
-        return ParsnipResponseBodyConverter(adapter)
+        val qualifiers = annotations.xmlAnnotations
+        return responseConverters.getOrPut(cacheKey(type, qualifiers)) {
+            ParsnipResponseBodyConverter(parsnip.adapter<Any>(type, qualifiers))
+        }
     }
 
     override fun requestBodyConverter(
@@ -39,13 +56,57 @@ class ParsnipConverterFactory private constructor(private val parsnip: Parsnip)
         methodAnnotations: Array<Annotation>,
         retrofit: Retrofit
     ): Converter<*, RequestBody> {
-        val adapter= parsnip.adapter<Any>(type)
-        return ParsnipRequestBodyConverter(adapter)
+        val qualifiers = parameterAnnotations.xmlAnnotations
+        return requestConverters.getOrPut(cacheKey(type, qualifiers)) {
+            ParsnipRequestBodyConverter(parsnip.adapter<Any>(type, qualifiers), bufferRequestBodies)
+        }
     }
 
+    /**
+     * Builds the converters for the request and response bodies of every method of [service] now,
+     * rather than on each method's first call, so that the reflection they need is done at startup.
+     * The lookups go through [retrofit], which should have been built with this factory, so that
+     * its call adapters decide each method's response type.
+     */
+    fun warmUp(retrofit: Retrofit, service: Class<*>) {
+        for (method in service.declaredMethods) {
+            if (method.isDefault || Modifier.isStatic(method.modifiers)) continue
+            val parameterTypes = method.genericParameterTypes
+            val parameterAnnotations = method.parameterAnnotations
+            for (i in parameterTypes.indices) {
+                if (parameterAnnotations[i].any { it is Body }) {
+                    retrofit.requestBodyConverter<Any>(parameterTypes[i], parameterAnnotations[i], method.annotations)
+                }
+            }
+            retrofit.responseBodyConverter<Any>(responseType(retrofit, method), method.annotations)
+        }
+    }
+
+    private fun responseType(retrofit: Retrofit, method: Method): Type {
+        val continuation = method.genericParameterTypes.lastOrNull() as? ParameterizedType
+        if (continuation == null || continuation.rawType != Continuation::class.java) {
+            return retrofit.callAdapter(method.genericReturnType, method.annotations).responseType()
+        }
+        // A suspend function, which returns the type its continuation is resumed with.
+        var type = continuation.actualTypeArguments[0]
+        if (type is WildcardType) type = type.lowerBounds[0]
+        if (type is ParameterizedType && type.rawType == Response::class.java) type = type.actualTypeArguments[0]
+        return type
+    }
+
+    private fun cacheKey(type: Type, qualifiers: Set<Annotation>): Any =
+        if (qualifiers.isEmpty()) type else listOf(type, qualifiers)
+
     companion object {
+        /**
+         * Returns a factory that converts with [parsnip]. Request bodies are streamed to the
+         * connection unless [bufferRequestBodies], which serializes each body up front so that it
+         * has a content length.
+         */
         @JvmOverloads
-        fun create(parsnip: Parsnip = Parsnip.Builder().build()): ParsnipConverterFactory =
-            ParsnipConverterFactory(parsnip)
+        fun create(
+            parsnip: Parsnip = Parsnip.Builder().build(),
+            bufferRequestBodies: Boolean = false
+        ): ParsnipConverterFactory = ParsnipConverterFactory(parsnip, bufferRequestBodies)
     }
 }
\ No newline at end of file
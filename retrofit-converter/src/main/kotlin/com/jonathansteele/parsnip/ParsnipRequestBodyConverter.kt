@@ -20,20 +20,53 @@ import java.lang.AssertionError
 import okhttp3.MediaType
 import okhttp3.RequestBody
 import okio.Buffer
+import okio.BufferedSink
 import retrofit2.Converter
 
-class ParsnipRequestBodyConverter<T>(private val adapter: XmlAdapter<T>) : Converter<T, RequestBody> {
+/**
+ * Converts values to request bodies that write their XML straight to the connection when they are
+ * sent, so a body is never held in memory. Such a body has no content length and is written each
+ * time it is sent, so the value must not change until the call is done. If [buffered], the XML is
+ * instead written into a buffer up front, which gives the body a content length.
+ */
+class ParsnipRequestBodyConverter<T> @JvmOverloads constructor(
+    private val adapter: XmlAdapter<T>,
+    private val buffered: Boolean = false
+) : Converter<T, RequestBody> {
     override fun convert(value: T): RequestBody {
+        if (!buffered) return StreamingRequestBody(adapter, value)
         val buffer = Buffer()
         try {
             adapter.toXml(buffer, value)
         } catch (e: IOException) {
             throw AssertionError(e) // Writing to Buffer does no I/O.
         }
-        return RequestBody.create(MEDIA_TYPE, buffer.readByteString())
+        return BufferedRequestBody(buffer)
+    }
+
+    private class StreamingRequestBody<T>(private val adapter: XmlAdapter<T>, private val value: T) : RequestBody() {
+        override fun contentType(): MediaType? = MEDIA_TYPE
+
+        @Throws(IOException::class)
+        override fun writeTo(sink: BufferedSink) {
+            adapter.toXml(sink, value)
+        }
+    }
+
+    private class BufferedRequestBody(private val buffer: Buffer) : RequestBody() {
+        override fun contentType(): MediaType? = MEDIA_TYPE
+
+        override fun contentLength(): Long = buffer.size
+
+        @Throws(IOException::class)
+        override fun writeTo(sink: BufferedSink) {
+            // Shares the buffer's segments rather than copying bytes, and leaves it whole for a retry.
+            buffer.copyTo(sink.buffer, 0L, buffer.size)
+            sink.emitCompleteSegments()
+        }
     }
 
     companion object {
         private val MEDIA_TYPE = MediaType.parse("application/xml; charset=utf8")
     }
-}
\ No newline at end of file
+}
@@ -4,4 +4,5 @@ include(":adapters")
 include(":parsnip")
 include(":benchmark")
 include(":retrofit-converter")
+include(":coroutines")
 include(":kotlin-codegen")
\ No newline at end of file